@@ -3,6 +3,7 @@ package DatasetGenerators;
 import java.util.ArrayList;
 
 import GenotypeGraph.GenotypeNode;
+import Utils.BitSquareMatrix;
 import Utils.SquareMatrix;
 import Utils.Utils;
 
@@ -35,7 +36,7 @@ public class GraphDatasetGenerator {
 	/**
 	 * adjacency matrix
 	 */
-	SquareMatrix<Boolean> E = new SquareMatrix<Boolean>(false);
+	BitSquareMatrix E = new BitSquareMatrix(0, true);
 	/**
 	 * unique id for the next node to be added
 	 */
@@ -66,11 +67,8 @@ public class GraphDatasetGenerator {
 		nParents = new int[E.getSize()];
 		nChildren = new int[E.getSize()];
 		for(int i=0; i<E.getSize(); i++){
-			for(int j=0; j<E.getSize(); j++){
-				int found = E.get(i,j)?1:0;
-				nParents[j] += found;
-				nChildren[i] += found;
-			}
+			nParents[i] = E.countColumn(i);
+			nChildren[i] = E.countRow(i);
 		}
 	}
 	
@@ -199,8 +197,7 @@ public class GraphDatasetGenerator {
 		GenotypeNode position = this.root;
 		for(int i=0; i<limit; i++){
 			double chooseRoute = Utils.random()*totalWeight(position);
-			for(int j=0; j<E.getSize(); j++){
-				if(!E.get(position.getId(), j)) continue;
+			for(int j=E.nextSetInRow(position.getId(), 0); j!=-1; j=E.nextSetInRow(position.getId(), j+1)){
 				if(chooseRoute < W.get(position.getId(), j)){
 					position = V.get(j);
 					break;
@@ -230,12 +227,10 @@ public class GraphDatasetGenerator {
 	private void toDotNode(GenotypeNode node) {
 		System.out.println(node.getId() + " [label=\"" + this.nodeLabel(node) + "\"]");
 		double norm = 0.;
-		for(int j=0; j<E.getSize(); j++){
-			if(!E.get(node.getId(), j)) continue;
+		for(int j=E.nextSetInRow(node.getId(), 0); j!=-1; j=E.nextSetInRow(node.getId(), j+1)){
 			norm+=this.W.get(node.getId(), j);
 		}
-		for(int j=0; j<E.getSize(); j++){
-			if(!E.get(node.getId(), j)) continue;
+		for(int j=E.nextSetInRow(node.getId(), 0); j!=-1; j=E.nextSetInRow(node.getId(), j+1)){
 			if(node.getId() != j){
 				System.out.println(node.getId() + " -> " + j + " [label=\"" +  String.format("%.3f", (this.W.get(node.getId(), j)/norm)/(1-(this.W.get(node.getId(), node.getId())/norm))) + "\"]");
 			} else {
@@ -5,17 +5,26 @@ import Utils.Utils;
 public class GenotypeGen {
 
 	private boolean[] genotype;
+	/**
+	 * genotype packed as in Utils.pack (for word level comparisons)
+	 */
+	private long[] packed;
 	private int numberOfMutations;
 
 	public GenotypeGen(boolean[] genotype){
 		this.genotype = genotype;
-		this.numberOfMutations = Utils.sumBool(genotype);
+		this.packed = Utils.pack(genotype);
+		this.numberOfMutations = Utils.sumBits(packed);
 	}
 	
 	public boolean[] get(){
 		return this.genotype;
 	}
 	
+	public long[] getPacked(){
+		return this.packed;
+	}
+	
 	public int getNumberOfMutations(){
 		return this.numberOfMutations;
 	}
@@ -7,7 +7,7 @@ import java.util.List;
 import Datasets.Dataset;
 import Graphs.DirectedWeightedGraphMatrix;
 import Graphs.Node;
-import Utils.SquareMatrix;
+import Utils.Kernels;
 import Utils.Utils;
 
 public class GraphDatasetGeneratorAllowingMultipleMutations {
@@ -15,6 +15,14 @@ public class GraphDatasetGeneratorAllowingMultipleMutations {
 	DirectedWeightedGraphMatrix<GenotypeGen> structure = new DirectedWeightedGraphMatrix<GenotypeGen>();
 	String[] labels;
 	Node<GenotypeGen> root;
+	/**
+	 * transition probabilities of structure (null: to be computed)
+	 */
+	private TransitionMatrix transitions = null;
+	/**
+	 * cached powers of transitions (null: to be computed)
+	 */
+	private TransitionPowers powers = null;
 	
 	/**
 	 * Manual constructor
@@ -66,15 +74,19 @@ public class GraphDatasetGeneratorAllowingMultipleMutations {
 		for(Node<GenotypeGen> b : nodes){
 			ArrayList<Node<GenotypeGen>> toLink = new ArrayList<Node<GenotypeGen>>();
 			int minDist = Integer.MAX_VALUE;
+			long[] target = b.getContent().getPacked();
 			for(Node<GenotypeGen> a : nodes){
 				if(a==b) continue;
-				if(Utils.isSubseteq(a.getContent().get(), b.getContent().get()) && minDist>=Utils.hammingDistance(a.getContent().get(), b.getContent().get())){
-					if(minDist==Utils.hammingDistance(a.getContent().get(), b.getContent().get())){
+				long[] candidate = a.getContent().getPacked();
+				if(!Kernels.isSubseteq(candidate, target)) continue;
+				int dist = Kernels.hammingDistance(candidate, target);
+				if(minDist>=dist){
+					if(minDist==dist){
 						toLink.add(a);
 					}else{
 						toLink = new ArrayList<Node<GenotypeGen>>();
 						toLink.add(a);
-						minDist = Utils.hammingDistance(a.getContent().get(), b.getContent().get());
+						minDist = dist;
 					}
 				}
 			}
@@ -93,6 +105,8 @@ public class GraphDatasetGeneratorAllowingMultipleMutations {
 	 */
 	public Node<GenotypeGen> add(boolean[] gnt){
 		assert(Utils.sumBool(gnt)!=0): "do not manually insert clonal genotype (use getRoot())";
+		transitions = null;
+		powers = null;
 		return structure.add(new GenotypeGen(gnt));
 	}
 	
@@ -103,9 +117,18 @@ public class GraphDatasetGeneratorAllowingMultipleMutations {
 	 * @param weight
 	 */
 	public void link(Node<GenotypeGen> a, Node<GenotypeGen> b, double weight){
+		transitions = null;
+		powers = null;
 		structure.link(a, b, weight);
 	}
 	
+	/**
+	 * @return the nodes of the generator graph (position is the id, as in the distributions)
+	 */
+	public List<Node<GenotypeGen>> getNodes(){
+		return structure.getNodes();
+	}
+	
 	/**
 	 * @return the clonal genotype of this
 	 */
@@ -235,7 +258,95 @@ public class GraphDatasetGeneratorAllowingMultipleMutations {
 	 * @return
 	 */
 	public ArrayList<Double> computeNextStepProbabilities(ArrayList<Double> initial){
-		return this.structure.getMatrix().vecProduct(initial);
+		TransitionMatrix p = getTransitionMatrix();
+		double[] in = new double[p.getSize()];
+		for(int i = 0; i<in.length; i++){
+			in[i] = initial.get(i);
+		}
+		double[] out = new double[p.getSize()];
+		p.step(in, out);
+		ArrayList<Double> ret = new ArrayList<Double>(out.length);
+		for(double cell : out){
+			ret.add(cell);
+		}
+		return ret;
+	}
+	
+	/**
+	 * compute the probabilities after steps transitions for many initial
+	 * distributions at once (see TransitionMatrix.evolve)
+	 * @param initial  initial[r] is the r-th distribution (getSize() elements)
+	 * @param steps
+	 * @return
+	 */
+	public double[][] computeProbabilities(double[][] initial, int steps){
+		return getTransitionMatrix().evolve(initial, steps);
+	}
+	
+	/**
+	 * @param starts
+	 * @return for each node, the distribution with all the mass on it
+	 */
+	public double[][] getPointDistributions(List<Node<GenotypeGen>> starts){
+		double[][] ret = new double[starts.size()][getSize()];
+		for(int r = 0; r<ret.length; r++){
+			ret[r][starts.get(r).getId()] = 1.;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Transition probabilities of the random walk used by generate
+	 * (built at the first call after a change of the graph)
+	 * @return
+	 */
+	public TransitionMatrix getTransitionMatrix(){
+		if(transitions == null){
+			transitions = new TransitionMatrix(structure);
+		}
+		return transitions;
+	}
+	
+	/**
+	 * Powers of the transition matrix (computed by repeated squaring and
+	 * kept until the graph is changed)
+	 * @return
+	 */
+	public TransitionPowers getTransitionPowers(){
+		if(powers == null){
+			powers = new TransitionPowers(getTransitionMatrix());
+		}
+		return powers;
+	}
+	
+	/**
+	 * exact distribution of the genotypes reached by generate with pathLength k
+	 * (O(log k) matrix products, shared by all the calls)
+	 * @param k path length
+	 * @return
+	 */
+	public double[] getDistributionAtStep(int k){
+		return getTransitionPowers().getDistribution(getInitialDistribution(), k);
+	}
+	
+	/**
+	 * distribution of the genotypes reached by generate with very long paths
+	 * (absorption probabilities when the graph has absorbing nodes and no cycles)
+	 * @param tolerance  on the L1 change of a step
+	 * @param maxSteps   maximum number of steps if the distribution is iterated
+	 * @return
+	 */
+	public LongRunDistribution getLongRunDistribution(double tolerance, int maxSteps){
+		return getTransitionMatrix().solveLongRun(getInitialDistribution(), tolerance, maxSteps);
+	}
+	
+	/**
+	 * @return the distribution at step 0 (all the mass on the clonal genotype)
+	 */
+	public double[] getInitialDistribution(){
+		double[] ret = new double[getSize()];
+		ret[root.getId()] = 1.;
+		return ret;
 	}
 	
 	/**
@@ -0,0 +1,71 @@
+package DatasetGeneratorsv2;
+
+/**
+ * Result of TransitionMatrix.solveLongRun and TransitionMatrix.evolve
+ * with a tolerance: the distribution reached, how it was computed
+ * and how far it is from a fixed point.
+ *
+ * @author rossi
+ *
+ */
+public class LongRunDistribution {
+
+	private final double[] distribution;
+	private final int steps;
+	private final double residual;
+	private final boolean converged;
+	private final boolean direct;
+
+	/**
+	 * @param distribution  the distribution reached
+	 * @param steps         number of transitions computed (0 if direct)
+	 * @param residual      L1 change of the last step (between distribution and distribution*P if direct)
+	 * @param converged     true if residual is below the requested tolerance
+	 * @param direct        true if computed as absorption probabilities (no iterations)
+	 */
+	LongRunDistribution(double[] distribution, int steps, double residual, boolean converged, boolean direct){
+		this.distribution = distribution;
+		this.steps = steps;
+		this.residual = residual;
+		this.converged = converged;
+		this.direct = direct;
+	}
+
+	public double[] getDistribution(){
+		return distribution;
+	}
+
+	/**
+	 * @return number of transitions computed (0 if isDirect())
+	 */
+	public int getSteps(){
+		return steps;
+	}
+
+	/**
+	 * @return L1 change of the last step (between the distribution and the distribution after one more step if isDirect())
+	 */
+	public double getResidual(){
+		return residual;
+	}
+
+	/**
+	 * @return false if the maximum number of steps was reached before the tolerance
+	 */
+	public boolean isConverged(){
+		return converged;
+	}
+
+	/**
+	 * @return true if the distribution was computed as absorption probabilities
+	 */
+	public boolean isDirect(){
+		return direct;
+	}
+
+	@Override
+	public String toString(){
+		return (direct ? "absorption probabilities" : steps + " steps") + ", residual: " + residual + (converged ? "" : " (not converged)");
+	}
+
+}
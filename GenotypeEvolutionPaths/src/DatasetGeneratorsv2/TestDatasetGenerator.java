@@ -2,9 +2,17 @@ package DatasetGeneratorsv2;
 
 
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
 import org.junit.Test;
 
 import Datasets.Dataset;
+import Graphs.Node;
 import GenotypeGraphsv2.GenotypeGraphAllowingMultipleMutations;
 
 public class TestDatasetGenerator {
@@ -20,4 +28,153 @@ public class TestDatasetGenerator {
 		grf.toDot(System.out);
 	}
 
+	@Test
+	public void testTransitionMatrix() {
+		GraphDatasetGeneratorAllowingMultipleMutations gen = new GraphDatasetGeneratorAllowingMultipleMutations(new String[]{"A", "B"});
+		Node<GenotypeGen> root = gen.getRoot();
+		Node<GenotypeGen> a = gen.add(new boolean[]{true, false});
+		Node<GenotypeGen> b = gen.add(new boolean[]{false, true});
+		Node<GenotypeGen> ab = gen.add(new boolean[]{true, true});
+		/* weights are normalized on each node */
+		gen.link(root, root, 2);
+		gen.link(root, a, 1);
+		gen.link(root, b, 1);
+		gen.link(a, ab, 3);
+		gen.link(b, b, 1);
+		gen.link(b, ab, 1);
+		/* ab has no children: it is absorbing */
+		TransitionMatrix p = gen.getTransitionMatrix();
+		assertEquals(4, p.getSize());
+		assertEquals(0.5, p.get(0, 0), 0.);
+		assertEquals(0.25, p.get(0, 2), 0.);
+		assertEquals(1., p.get(1, 3), 0.);
+		assertEquals(1., p.get(3, 3), 0.);
+		assertEquals(0., p.get(3, 0), 0.);
+
+		double[] next = new double[4];
+		p.step(gen.getInitialDistribution(), next);
+		assertArrayEquals(new double[]{0.5, 0.25, 0.25, 0.}, next, 1e-12);
+
+		final double[][] steps = new double[3][];
+		double[] last = p.evolve(gen.getInitialDistribution(), 3, (step, probs) -> steps[step-1] = probs.clone());
+		assertArrayEquals(next, steps[0], 1e-12);
+		assertArrayEquals(new double[]{0.25, 0.125, 0.25, 0.375}, steps[1], 1e-12);
+		assertArrayEquals(steps[2], last, 0.);
+		double sum = 0.;
+		for(double cell : last){
+			sum += cell;
+		}
+		assertEquals(1., sum, 1e-12);
+
+		/* the list version gives the same result */
+		ArrayList<Double> list = new ArrayList<Double>();
+		for(double cell : steps[1]){
+			list.add(cell);
+		}
+		ArrayList<Double> res = gen.computeNextStepProbabilities(list);
+		for(int i = 0; i<4; i++){
+			assertEquals(steps[2][i], res.get(i), 0.);
+		}
+
+		/* changes of the graph are seen by the next transition matrix */
+		gen.link(ab, ab, 1);
+		assertEquals(1., gen.getTransitionMatrix().get(3, 3), 0.);
+		assertEquals(7, gen.getTransitionMatrix().getNumberOfTransitions());
+	}
+
+	@Test
+	public void testTransitionPowers() {
+		GraphDatasetGeneratorAllowingMultipleMutations gen = new GraphDatasetGeneratorAllowingMultipleMutations(6);
+		TransitionMatrix p = gen.getTransitionMatrix();
+		TransitionPowers powers = gen.getTransitionPowers();
+		assertArrayEquals(gen.getInitialDistribution(), gen.getDistributionAtStep(0), 0.);
+		for(int k : new int[]{1, 2, 5, 150, 77}){
+			double[] expected = p.evolve(gen.getInitialDistribution(), k, null);
+			assertArrayEquals(expected, gen.getDistributionAtStep(k), 1e-12);
+			assertArrayEquals(expected, powers.getPower(k).vecProduct(gen.getInitialDistribution()), 1e-12);
+		}
+		/* squares up to P^128 (7 products) and 1 + 3 + 3 products to combine them for 5, 150 and 77 */
+		assertEquals(14, powers.getNumberOfMultiplications());
+		/* cached powers are not computed again */
+		powers.getPower(150);
+		gen.getDistributionAtStep(64);
+		assertEquals(14, powers.getNumberOfMultiplications());
+		/* a change of the graph drops the powers */
+		gen.add(new boolean[]{true, true, true, true, true, true});
+		assertEquals(0, gen.getTransitionPowers().getNumberOfMultiplications());
+		assertEquals(p.getSize()+1, gen.getDistributionAtStep(3).length);
+	}
+
+	@Test
+	public void testLongRunDistribution() {
+		GraphDatasetGeneratorAllowingMultipleMutations gen = new GraphDatasetGeneratorAllowingMultipleMutations(new String[]{"A", "B"});
+		Node<GenotypeGen> root = gen.getRoot();
+		Node<GenotypeGen> a = gen.add(new boolean[]{true, false});
+		Node<GenotypeGen> b = gen.add(new boolean[]{false, true});
+		Node<GenotypeGen> ab = gen.add(new boolean[]{true, true});
+		gen.link(root, root, 2);
+		gen.link(root, a, 1);
+		gen.link(root, b, 1);
+		gen.link(a, a, 1);
+		gen.link(a, ab, 3);
+		gen.link(b, b, 1);
+		/* a and b are reached with the same probability, ab absorbs all the mass of a */
+		LongRunDistribution direct = gen.getLongRunDistribution(1e-12, 1000);
+		assertTrue(direct.isDirect());
+		assertTrue(direct.isConverged());
+		assertEquals(0, direct.getSteps());
+		assertArrayEquals(new double[]{0., 0., 0.5, 0.5}, direct.getDistribution(), 1e-12);
+
+		/* power iteration reaches the same distribution */
+		LongRunDistribution iterated = gen.getTransitionMatrix().evolve(gen.getInitialDistribution(), 1000, 1e-12, null);
+		assertFalse(iterated.isDirect());
+		assertTrue(iterated.isConverged());
+		assertTrue(iterated.getSteps() > 10 && iterated.getSteps() < 1000);
+		assertTrue(iterated.getResidual() < 1e-12);
+		assertArrayEquals(direct.getDistribution(), iterated.getDistribution(), 1e-11);
+
+		/* not enough steps */
+		LongRunDistribution truncated = gen.getTransitionMatrix().evolve(gen.getInitialDistribution(), 5, 1e-12, null);
+		assertFalse(truncated.isConverged());
+		assertEquals(5, truncated.getSteps());
+
+		/* with a cycle the distribution is iterated (a and ab share the mass of a as 4:3) */
+		gen.link(ab, a, 1);
+		LongRunDistribution cycle = gen.getLongRunDistribution(1e-12, 1000);
+		assertFalse(cycle.isDirect());
+		assertTrue(cycle.isConverged());
+		assertArrayEquals(new double[]{0., 0.5*4/7, 0.5, 0.5*3/7}, cycle.getDistribution(), 1e-11);
+	}
+
+	@Test
+	public void testLongRunRandomGenerator() {
+		GraphDatasetGeneratorAllowingMultipleMutations gen = new GraphDatasetGeneratorAllowingMultipleMutations(8);
+		LongRunDistribution direct = gen.getLongRunDistribution(1e-9, 100000);
+		assertTrue(direct.isDirect());
+		assertTrue(direct.getResidual() < 1e-12);
+		assertArrayEquals(gen.getDistributionAtStep(1 << 20), direct.getDistribution(), 1e-9);
+	}
+
+	@Test
+	public void testBatchedEvolution() {
+		GraphDatasetGeneratorAllowingMultipleMutations gen = new GraphDatasetGeneratorAllowingMultipleMutations(8);
+		/* from each single mutation genotype */
+		ArrayList<Node<GenotypeGen>> starts = new ArrayList<Node<GenotypeGen>>();
+		for(Node<GenotypeGen> node : gen.getNodes()){
+			if(node.getContent().getNumberOfMutations() == 1){
+				starts.add(node);
+			}
+		}
+		starts.add(gen.getRoot());
+		double[][] initial = gen.getPointDistributions(starts);
+		double[][] res = gen.computeProbabilities(initial, 20);
+		assertEquals(starts.size(), res.length);
+		for(int r = 0; r<starts.size(); r++){
+			assertEquals(1., initial[r][starts.get(r).getId()], 0.);
+			assertArrayEquals(gen.getTransitionMatrix().evolve(initial[r], 20, null), res[r], 0.);
+		}
+		assertArrayEquals(gen.getDistributionAtStep(20), res[starts.size()-1], 1e-12);
+		assertEquals(0, gen.computeProbabilities(new double[0][], 3).length);
+	}
+
 }
@@ -0,0 +1,335 @@
+package DatasetGeneratorsv2;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import Graphs.DirectedWeightedGraphMatrix;
+import Graphs.Node;
+import Utils.DoubleSquareMatrix;
+import Utils.Kernels;
+
+/**
+ * Transition probabilities of the random walk on a generator graph,
+ * stored as compressed sparse rows: the weights of the out-coming edges
+ * of each node are normalized to 1 (as in the simulation), nodes without
+ * out-coming weight are absorbing (the walk stops there).
+ * The matrix is read only, products with a distribution do not allocate.
+ *
+ * @author rossi
+ *
+ */
+public class TransitionMatrix {
+
+	/**
+	 * Receives the distributions computed by evolve
+	 */
+	public interface StepListener {
+		/**
+		 * @param step           number of transitions done (from 1)
+		 * @param probabilities  distribution after step transitions
+		 *                       (NOTE: the array is reused by the next step)
+		 */
+		void onStep(int step, double[] probabilities);
+	}
+
+	/**
+	 * number of distributions evolved together by a parallel task
+	 * (32 doubles per state: wider blocks do not stay in cache)
+	 */
+	private static final int BLOCK_WIDTH = 32;
+
+	private final int size;
+	/**
+	 * the children of i are target[rowStart[i]], ..., target[rowStart[i+1]-1] (ascending order)
+	 */
+	private final int[] rowStart;
+	private final int[] target;
+	/**
+	 * probability[k] is the probability of moving to target[k]
+	 */
+	private final double[] probability;
+
+	/**
+	 * @param structure weighted graph of the generator
+	 */
+	TransitionMatrix(DirectedWeightedGraphMatrix<GenotypeGen> structure){
+		List<Node<GenotypeGen>> nodes = structure.getNodes();
+		this.size = nodes.size();
+		this.rowStart = new int[size+1];
+		int edges = 0;
+		for(Node<GenotypeGen> node : nodes){
+			edges += Math.max(1, structure.getNumberOfChildren(node));
+		}
+		this.target = new int[edges];
+		this.probability = new double[edges];
+		int k = 0;
+		for(Node<GenotypeGen> node : nodes){
+			List<Node<GenotypeGen>> adj = structure.getAdjacencyList(node);
+			/* same normalization of the random walk */
+			double norm = 0.;
+			for(Node<GenotypeGen> next : adj){
+				norm += structure.getWeight(node, next);
+			}
+			if(norm == 0.){
+				target[k] = node.getId();
+				probability[k] = 1.;
+				k++;
+			}else{
+				for(Node<GenotypeGen> next : adj){
+					target[k] = next.getId();
+					probability[k] = structure.getWeight(node, next)/norm;
+					k++;
+				}
+			}
+			rowStart[node.getId()+1] = k;
+		}
+		assert k == edges;
+	}
+
+	/**
+	 * @return number of states
+	 */
+	public int getSize(){
+		return size;
+	}
+
+	/**
+	 * @return number of non zero cells
+	 */
+	public int getNumberOfTransitions(){
+		return target.length;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return probability of moving from i to j
+	 */
+	public double get(int i, int j){
+		int k = Arrays.binarySearch(target, rowStart[i], rowStart[i+1], j);
+		return k < 0 ? 0. : probability[k];
+	}
+
+	/**
+	 * @return this matrix in dense form
+	 */
+	public DoubleSquareMatrix toDoubleSquareMatrix(){
+		DoubleSquareMatrix ret = new DoubleSquareMatrix(size);
+		for(int i = 0; i<size; i++){
+			for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+				ret.set(i, target[k], probability[k]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * One transition: out = in*P, O(size + transitions), no allocations
+	 * @param in   REQUIRE at least getSize() elements
+	 * @param out  REQUIRE at least getSize() elements, different from in (overwritten)
+	 */
+	public void step(double[] in, double[] out){
+		Arrays.fill(out, 0, size, 0.);
+		for(int i = 0; i<size; i++){
+			double p = in[i];
+			if(p == 0.) continue;
+			for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+				out[target[k]] += p*probability[k];
+			}
+		}
+	}
+
+	/**
+	 * Evolves a distribution for a number of steps, passing each intermediate
+	 * distribution to listener (only two buffers are used for the whole evolution)
+	 * @param initial   distribution at step 0 (REQUIRE at least getSize() elements, not modified)
+	 * @param steps     number of transitions
+	 * @param listener  called after each step (can be null)
+	 * @return the distribution after steps transitions
+	 */
+	public double[] evolve(double[] initial, int steps, StepListener listener){
+		return evolve(initial, steps, 0., listener).getDistribution();
+	}
+
+	/**
+	 * Evolves many distributions together, as a product of a matrix (one
+	 * distribution per row) by P at each step: the distributions are
+	 * interleaved (cell i of all of them is contiguous), so the transitions
+	 * are read once per step for a block of BLOCK_WIDTH distributions and
+	 * each of them is an axpy on the block. Blocks are evolved in parallel.
+	 * Each distribution is the same computed by evolve(initial[r], steps, null)
+	 * @param initial  initial[r] is the r-th distribution at step 0 (REQUIRE at least getSize() elements, not modified)
+	 * @param steps    number of transitions
+	 * @return ret[r] is the r-th distribution after steps transitions
+	 */
+	public double[][] evolve(double[][] initial, int steps){
+		int m = initial.length;
+		double[][] ret = new double[m][];
+		int blocks = (m + BLOCK_WIDTH - 1)/BLOCK_WIDTH;
+		IntStream.range(0, blocks).parallel().forEach(b -> {
+			int from = b*BLOCK_WIDTH;
+			evolveBlock(initial, ret, from, Math.min(m, from + BLOCK_WIDTH) - from, steps);
+		});
+		return ret;
+	}
+
+	/**
+	 * Evolves initial[from..from+width) writing the results in ret
+	 */
+	private void evolveBlock(double[][] initial, double[][] ret, int from, int width, int steps){
+		double[] current = new double[size*width];
+		double[] next = new double[size*width];
+		for(int r = 0; r<width; r++){
+			for(int i = 0; i<size; i++){
+				current[i*width + r] = initial[from + r][i];
+			}
+		}
+		/* for each state, the distributions [first[i], last[i]) can have mass on it
+		 * (empty range: the state is skipped) */
+		int[] first = new int[size];
+		int[] last = new int[size];
+		int[] nextFirst = new int[size];
+		int[] nextLast = new int[size];
+		Arrays.fill(first, width);
+		for(int r = 0; r<width; r++){
+			for(int i = 0; i<size; i++){
+				if(initial[from + r][i] != 0.){
+					first[i] = Math.min(first[i], r);
+					last[i] = r+1;
+				}
+			}
+		}
+		for(int s = 0; s<steps; s++){
+			Arrays.fill(next, 0.);
+			Arrays.fill(nextFirst, width);
+			Arrays.fill(nextLast, 0);
+			for(int i = 0; i<size; i++){
+				if(first[i] >= last[i]) continue;
+				for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+					int j = target[k];
+					Kernels.axpy(probability[k], current, i*width + first[i], next, j*width + first[i], last[i] - first[i]);
+					nextFirst[j] = Math.min(nextFirst[j], first[i]);
+					nextLast[j] = Math.max(nextLast[j], last[i]);
+				}
+			}
+			double[] tmp = current;
+			current = next;
+			next = tmp;
+			int[] tmpRange = first;
+			first = nextFirst;
+			nextFirst = tmpRange;
+			tmpRange = last;
+			last = nextLast;
+			nextLast = tmpRange;
+		}
+		for(int r = 0; r<width; r++){
+			ret[from + r] = new double[size];
+			for(int i = 0; i<size; i++){
+				ret[from + r][i] = current[i*width + r];
+			}
+		}
+	}
+
+	/**
+	 * Evolves a distribution (power iteration) until the L1 change of a step
+	 * is below tolerance or maxSteps transitions are done
+	 * @param initial    distribution at step 0 (REQUIRE at least getSize() elements, not modified)
+	 * @param maxSteps   maximum number of transitions
+	 * @param tolerance  on the L1 change of a step
+	 * @param listener   called after each step (can be null)
+	 * @return the last distribution, the number of steps and the last L1 change
+	 */
+	public LongRunDistribution evolve(double[] initial, int maxSteps, double tolerance, StepListener listener){
+		double[] current = Arrays.copyOf(initial, size);
+		double[] next = new double[size];
+		double change = Double.POSITIVE_INFINITY;
+		int s = 0;
+		while(s<maxSteps && !(change < tolerance)){
+			step(current, next);
+			change = distance(current, next);
+			double[] tmp = current;
+			current = next;
+			next = tmp;
+			s++;
+			if(listener != null){
+				listener.onStep(s, current);
+			}
+		}
+		return new LongRunDistribution(current, s, change, change < tolerance, false);
+	}
+
+	/**
+	 * Distribution reached in the long run from initial: when the graph
+	 * is acyclic apart from self loops (as generator graphs, where each
+	 * edge adds mutations) all the mass ends in absorbing nodes and the
+	 * absorption probabilities are computed directly in O(size + transitions),
+	 * otherwise the distribution is evolved as in evolve
+	 * @param initial    distribution at step 0 (REQUIRE at least getSize() elements, not modified)
+	 * @param tolerance  on the L1 change of a step
+	 * @param maxSteps   maximum number of transitions (if not solved directly)
+	 * @return
+	 */
+	public LongRunDistribution solveLongRun(double[] initial, double tolerance, int maxSteps){
+		double[] absorbed = absorptionProbabilities(initial);
+		if(absorbed == null){
+			return evolve(initial, maxSteps, tolerance, null);
+		}
+		double[] next = new double[size];
+		step(absorbed, next);
+		double residual = distance(absorbed, next);
+		return new LongRunDistribution(absorbed, 0, residual, residual < tolerance, true);
+	}
+
+	/**
+	 * Visits the nodes in topological order (self loops excluded) moving the
+	 * expected number of visits of each transient node to its children
+	 * (a node entered with mass m and self loop probability p is visited m/(1-p) times)
+	 * @param initial
+	 * @return the probability of ending in each absorbing node, null if the graph has a cycle
+	 */
+	private double[] absorptionProbabilities(double[] initial){
+		int[] parents = new int[size];
+		for(int i = 0; i<size; i++){
+			for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+				if(target[k] != i) parents[target[k]]++;
+			}
+		}
+		int[] order = new int[size];
+		int head = 0, tail = 0;
+		for(int i = 0; i<size; i++){
+			if(parents[i] == 0) order[tail++] = i;
+		}
+		double[] mass = Arrays.copyOf(initial, size);
+		double[] ret = new double[size];
+		while(head<tail){
+			int i = order[head++];
+			double stay = get(i, i);
+			double visits = 0.;
+			if(stay == 1.){
+				ret[i] = mass[i];
+			}else{
+				visits = mass[i]/(1. - stay);
+			}
+			for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+				int j = target[k];
+				if(j == i) continue;
+				mass[j] += visits*probability[k];
+				if(--parents[j] == 0) order[tail++] = j;
+			}
+		}
+		return tail == size ? ret : null;
+	}
+
+	/**
+	 * @return L1 distance between the first getSize() elements of a and b
+	 */
+	private double distance(double[] a, double[] b){
+		double ret = 0.;
+		for(int i = 0; i<size; i++){
+			ret += Math.abs(a[i] - b[i]);
+		}
+		return ret;
+	}
+
+}
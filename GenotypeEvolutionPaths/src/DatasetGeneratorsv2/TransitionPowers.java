@@ -0,0 +1,120 @@
+package DatasetGeneratorsv2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import Utils.DoubleSquareMatrix;
+
+/**
+ * Powers of a transition matrix P computed by repeated squaring:
+ * P^(2^i) is computed once (one product from P^(2^(i-1))) and kept, so
+ * P^k costs at most log2(k) new products (DoubleSquareMatrix.multiply,
+ * tiled and parallel) and the distribution after k steps only needs the
+ * squares already computed for smaller or equal exponents.
+ * NOTE: matrices are dense, each of them takes 8*size^2 bytes.
+ *
+ * @author rossi
+ *
+ */
+public class TransitionPowers {
+
+	private final TransitionMatrix transitions;
+	/**
+	 * squares.get(i) is P^(2^i)
+	 */
+	private final ArrayList<DoubleSquareMatrix> squares = new ArrayList<DoubleSquareMatrix>();
+	/**
+	 * powers requested with getPower
+	 */
+	private final HashMap<Integer, DoubleSquareMatrix> powers = new HashMap<Integer, DoubleSquareMatrix>();
+	/**
+	 * number of matrix products computed so far
+	 */
+	private int multiplications = 0;
+
+	/**
+	 * @param transitions P
+	 */
+	TransitionPowers(TransitionMatrix transitions){
+		this.transitions = transitions;
+	}
+
+	/**
+	 * @param i
+	 * @return P^(2^i) (computed at the first request)
+	 */
+	private DoubleSquareMatrix getSquare(int i){
+		if(squares.isEmpty()){
+			squares.add(transitions.toDoubleSquareMatrix());
+		}
+		while(squares.size() <= i){
+			DoubleSquareMatrix last = squares.get(squares.size()-1);
+			squares.add(last.multiply(last));
+			multiplications++;
+		}
+		return squares.get(i);
+	}
+
+	/**
+	 * P^k by binary exponentiation (the result is cached)
+	 * @param k REQUIRE k >= 0
+	 * @return P^k (NOTE: it must not be modified)
+	 */
+	public synchronized DoubleSquareMatrix getPower(int k){
+		if(k < 0){
+			throw new IllegalArgumentException("Negative exponent: " + k);
+		}
+		DoubleSquareMatrix ret = powers.get(k);
+		if(ret != null) return ret;
+		if(k == 0){
+			ret = new DoubleSquareMatrix(transitions.getSize());
+			for(int i = 0; i<ret.getSize(); i++){
+				ret.set(i, i, 1.);
+			}
+		}
+		for(int i = 0; (k >> i) != 0; i++){
+			if(((k >> i) & 1) == 0) continue;
+			if(ret == null){
+				ret = getSquare(i);
+			}else{
+				ret = ret.multiply(getSquare(i));
+				multiplications++;
+			}
+		}
+		powers.put(k, ret);
+		return ret;
+	}
+
+	/**
+	 * Distribution after k steps: initial*P^k computed with one vector product
+	 * for each bit of k (matrix products are only needed for the missing squares)
+	 * @param initial  distribution at step 0 (REQUIRE at least getSize() elements)
+	 * @param k        number of steps (REQUIRE k >= 0)
+	 * @return initial*P^k
+	 */
+	public synchronized double[] getDistribution(double[] initial, int k){
+		if(k < 0){
+			throw new IllegalArgumentException("Negative number of steps: " + k);
+		}
+		DoubleSquareMatrix power = powers.get(k);
+		if(power != null){
+			return power.vecProduct(initial);
+		}
+		double[] ret = Arrays.copyOf(initial, transitions.getSize());
+		for(int i = 0; (k >> i) != 0; i++){
+			if(((k >> i) & 1) == 1){
+				ret = getSquare(i).vecProduct(ret);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return number of matrix products computed so far
+	 */
+	public int getNumberOfMultiplications(){
+		return multiplications;
+	}
+
+}
@@ -0,0 +1,344 @@
+package Datasets;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import Utils.Utils;
+
+/**
+ * Binary on-disk format for compacted data sets.
+ * Layout (big endian, every section starts at a multiple of 8 bytes):
+ * header       : magic, version, #genes, #genotypes, #entries, #names, #sample references, labels size (8 ints)
+ * labels       : for each gene, length and UTF-8 bytes of its label
+ * genotypes    : packed genotypes (#genotypes * words per genotype longs)
+ * frequencies  : one int for each genotype
+ * samples      : #genotypes+1 offsets in the sample references, then the sample references (ids of names)
+ * names        : #names+1 offsets in the names blob, then the UTF-8 names blob
+ * collapsed    : #original genes (0 if no gene was collapsed), for each of them length and UTF-8 bytes
+ *                of its label, then for each gene the number and the positions of its original genes
+ *                (see Dataset.collapseEquivalentGenes, since version 2)
+ *
+ * Sections are memory mapped when the file is opened and they are not copied:
+ * genotypes, frequencies and samples are read from the mapping when requested
+ * (data sets copy them on the heap only before a modification).
+ *
+ * @author rossi
+ *
+ */
+class BinaryDatasetFile {
+
+	static final int MAGIC = 0x47455044; /* "GEPD" */
+	static final int VERSION = 2;
+	private static final int HEADER_SIZE = 8*4;
+
+	private final ArrayList<String> labels;
+	private final PackedGenotypeStore genotypes;
+	private final List<Integer> frequencies;
+	private final int numberOfEntries;
+	/**
+	 * ids of the samples of each genotype
+	 */
+	private final List<int[]> samples;
+	private final SampleDictionary sampleNames;
+	/**
+	 * genes before collapsing and original genes of each gene (null if no gene was collapsed)
+	 */
+	private ArrayList<String> originalLabels = null;
+	private ArrayList<int[]> originalGenes = null;
+
+	/**
+	 * Writes a compacted data set
+	 * @param out             destination
+	 * @param labels          genes names
+	 * @param genotypes       distinct genotypes
+	 * @param frequencies     frequency of each genotype
+	 * @param samples         ids of the samples of each genotype
+	 * @param names           names of the samples (only the referenced ones are written)
+	 * @param numberOfEntries number of samples in the data set
+	 * @param originalLabels  genes names before collapsing (null if no gene was collapsed)
+	 * @param originalGenes   positions in originalLabels of the genes represented by each gene (null if no gene was collapsed)
+	 * @throws IOException
+	 */
+	static void write(DataOutputStream out, List<String> labels, PackedGenotypeStore genotypes, List<Integer> frequencies,
+			List<int[]> samples, SampleDictionary names, int numberOfEntries, 
+			List<String> originalLabels, List<int[]> originalGenes) throws IOException {
+		/* ids in the file (in order of first reference) */
+		int[] newId = new int[names.size()];
+		Arrays.fill(newId, -1);
+		ArrayList<Integer> written = new ArrayList<Integer>();
+		int references = 0;
+		for(int[] s : samples){
+			for(int id : s){
+				if(newId[id] == -1){
+					newId[id] = written.size();
+					written.add(id);
+				}
+				references++;
+			}
+		}
+		int labelsSize = 0;
+		for(String l : labels){
+			labelsSize += 4 + l.getBytes(StandardCharsets.UTF_8).length;
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(labels.size());
+		out.writeInt(genotypes.size());
+		out.writeInt(numberOfEntries);
+		out.writeInt(written.size());
+		out.writeInt(references);
+		out.writeInt(labelsSize);
+
+		writeLabels(out, labels);
+		pad(out, labelsSize);
+
+		for(int i = 0; i<genotypes.size(); i++){
+			for(int w = 0; w<genotypes.getWordsPerRow(); w++){
+				out.writeLong(genotypes.getWord(i, w));
+			}
+		}
+
+		for(int f : frequencies){
+			out.writeInt(f);
+		}
+		pad(out, 4L*frequencies.size());
+
+		int offset = 0;
+		out.writeInt(offset);
+		for(int[] s : samples){
+			offset += s.length;
+			out.writeInt(offset);
+		}
+		for(int[] s : samples){
+			for(int id : s){
+				out.writeInt(newId[id]);
+			}
+		}
+		pad(out, 4L*(samples.size()+1+references));
+
+		offset = 0;
+		out.writeInt(offset);
+		for(int id : written){
+			offset += names.encodedLength(id);
+			out.writeInt(offset);
+		}
+		for(int id : written){
+			out.write(names.getBlob(), names.encodedOffset(id), names.encodedLength(id));
+		}
+		pad(out, 4L*(written.size()+1) + offset);
+
+		if(originalGenes == null){
+			out.writeInt(0);
+		}else{
+			out.writeInt(originalLabels.size());
+			writeLabels(out, originalLabels);
+			for(int[] originals : originalGenes){
+				out.writeInt(originals.length);
+				for(int original : originals){
+					out.writeInt(original);
+				}
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * writes length and UTF-8 bytes of each label
+	 */
+	private static void writeLabels(DataOutputStream out, List<String> labels) throws IOException {
+		for(String l : labels){
+			byte[] encoded = l.getBytes(StandardCharsets.UTF_8);
+			out.writeInt(encoded.length);
+			out.write(encoded);
+		}
+	}
+
+	/**
+	 * reads n labels written by writeLabels
+	 */
+	private static ArrayList<String> readLabels(ByteBuffer in, int n){
+		ArrayList<String> ret = new ArrayList<String>(n);
+		for(int i = 0; i<n; i++){
+			byte[] label = new byte[in.getInt()];
+			in.get(label);
+			ret.add(new String(label, StandardCharsets.UTF_8));
+		}
+		return ret;
+	}
+
+	/**
+	 * writes zeros to align a section of 'written' bytes to 8 bytes
+	 */
+	private static void pad(DataOutputStream out, long written) throws IOException {
+		for(long i = written; i%8 != 0; i++){
+			out.writeByte(0);
+		}
+	}
+
+	/**
+	 * @return 'size' rounded up to a multiple of 8
+	 */
+	private static long align(long size){
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * Opens a data set file mapping its sections
+	 * @param channel file to be read
+	 * @throws IOException if the file is not a valid data set file
+	 */
+	BinaryDatasetFile(FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if(header.getInt() != MAGIC){
+			throw new IOException("Not a binary data set file");
+		}
+		int version = header.getInt();
+		if(version < 1 || version > VERSION){
+			throw new IOException("Unsupported binary data set version");
+		}
+		int nGenes = header.getInt();
+		int nGenotypes = header.getInt();
+		numberOfEntries = header.getInt();
+		int nNames = header.getInt();
+		int references = header.getInt();
+		int labelsSize = header.getInt();
+		long position = HEADER_SIZE;
+
+		labels = readLabels(channel.map(FileChannel.MapMode.READ_ONLY, position, labelsSize), nGenes);
+		position += align(labelsSize);
+
+		long words = (long) nGenotypes*Utils.wordsFor(nGenes);
+		genotypes = PackedGenotypeStore.wrap(nGenes, channel.map(FileChannel.MapMode.READ_ONLY, position, 8L*words).asLongBuffer(), nGenotypes);
+		position += 8L*words;
+
+		frequencies = new MappedIntegerList(channel.map(FileChannel.MapMode.READ_ONLY, position, 4L*nGenotypes).asIntBuffer());
+		position += align(4L*nGenotypes);
+
+		IntBuffer sampleOffsets = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L*(nGenotypes+1)).asIntBuffer();
+		position += 4L*(nGenotypes+1);
+		IntBuffer sampleIds = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L*references).asIntBuffer();
+		samples = new MappedSampleList(sampleOffsets, sampleIds);
+		position = align(position + 4L*references);
+
+		IntBuffer nameOffsets = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L*(nNames+1)).asIntBuffer();
+		position += 4L*(nNames+1);
+		ByteBuffer nameBlob = channel.map(FileChannel.MapMode.READ_ONLY, position, nameOffsets.get(nNames));
+		sampleNames = SampleDictionary.wrap(nameBlob, nameOffsets, nNames);
+		position = align(position + nameOffsets.get(nNames));
+
+		if(version >= 2){
+			ByteBuffer collapsed = channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position);
+			int nOriginals = collapsed.getInt();
+			if(nOriginals > 0){
+				originalLabels = readLabels(collapsed, nOriginals);
+				originalGenes = new ArrayList<int[]>(nGenes);
+				for(int i = 0; i<nGenes; i++){
+					int[] originals = new int[collapsed.getInt()];
+					collapsed.asIntBuffer().get(originals);
+					collapsed.position(collapsed.position() + 4*originals.length);
+					originalGenes.add(originals);
+				}
+			}
+		}
+	}
+
+	ArrayList<String> getLabels(){
+		return labels;
+	}
+
+	PackedGenotypeStore getGenotypes(){
+		return genotypes;
+	}
+
+	List<Integer> getFrequencies(){
+		return frequencies;
+	}
+
+	List<int[]> getSamples(){
+		return samples;
+	}
+
+	SampleDictionary getSampleNames(){
+		return sampleNames;
+	}
+
+	int getNumberOfEntries(){
+		return numberOfEntries;
+	}
+
+	ArrayList<String> getOriginalLabels(){
+		return originalLabels;
+	}
+
+	ArrayList<int[]> getOriginalGenes(){
+		return originalGenes;
+	}
+
+	/**
+	 * Read only list of the ints of a mapped section
+	 */
+	private static class MappedIntegerList extends AbstractList<Integer> implements RandomAccess {
+
+		private final IntBuffer values;
+
+		MappedIntegerList(IntBuffer values){
+			this.values = values;
+		}
+
+		@Override
+		public Integer get(int index){
+			return values.get(index);
+		}
+
+		@Override
+		public int size(){
+			return values.capacity();
+		}
+
+	}
+
+	/**
+	 * Read only list of the sample ids of each genotype
+	 * (the ids of a genotype are copied from the mapping at each get)
+	 */
+	private static class MappedSampleList extends AbstractList<int[]> implements RandomAccess {
+
+		/**
+		 * the ids of genotype i are ids[offsets[i], offsets[i+1])
+		 */
+		private final IntBuffer offsets;
+		private final IntBuffer ids;
+
+		MappedSampleList(IntBuffer offsets, IntBuffer ids){
+			this.offsets = offsets;
+			this.ids = ids;
+		}
+
+		@Override
+		public int[] get(int index){
+			int from = offsets.get(index);
+			int[] ret = new int[offsets.get(index+1) - from];
+			IntBuffer src = ids.duplicate();
+			src.position(from);
+			src.get(ret);
+			return ret;
+		}
+
+		@Override
+		public int size(){
+			return offsets.capacity() - 1;
+		}
+
+	}
+
+}
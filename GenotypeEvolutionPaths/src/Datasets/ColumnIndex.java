@@ -0,0 +1,219 @@
+package Datasets;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Column major index of a PackedGenotypeStore:
+ * for each gene a bitmap of the genotypes (rows) in which it is mutated
+ * (row r is bit r%64 of word r/64).
+ * The index is a snapshot: it must be rebuilt if the store changes.
+ *
+ * @author rossi
+ *
+ */
+public class ColumnIndex {
+
+	/**
+	 * indexed genotypes
+	 */
+	private final PackedGenotypeStore store;
+	/**
+	 * one bitmap of rows for each gene
+	 */
+	private final long[][] columns;
+	/**
+	 * number of rows in which each gene is mutated
+	 */
+	private final int[] counts;
+
+	/**
+	 * Builds the index of a store
+	 * @param store genotypes to be indexed
+	 */
+	public ColumnIndex(PackedGenotypeStore store){
+		this.store = store;
+		int rowWords = (store.size() + 63) >>> 6;
+		this.columns = new long[store.getNumberOfGenes()][rowWords];
+		this.counts = new int[store.getNumberOfGenes()];
+		for(int row = 0; row<store.size(); row++){
+			for(int w = 0; w<store.getWordsPerRow(); w++){
+				long word = store.getWord(row, w);
+				while(word != 0){
+					int bit = Long.numberOfLeadingZeros(word);
+					int gene = (w << 6) + bit;
+					columns[gene][row >>> 6] |= 1L << (row & 63);
+					word &= ~(Long.MIN_VALUE >>> bit);
+				}
+			}
+		}
+		for(int gene = 0; gene<counts.length; gene++){
+			for(long word : columns[gene]){
+				counts[gene] += Long.bitCount(word);
+			}
+		}
+	}
+
+	/**
+	 * @param gene
+	 * @return number of genotypes in which gene is mutated
+	 */
+	public int count(int gene){
+		return counts[gene];
+	}
+
+	/**
+	 * @return for each gene the number of genotypes in which it is mutated
+	 */
+	public int[] getCounts(){
+		return counts.clone();
+	}
+
+	/**
+	 * @param gene
+	 * @param weights weight of each genotype (e.g. frequencies)
+	 * @return sum of the weights of the genotypes in which gene is mutated
+	 */
+	public long weightedCount(int gene, List<Integer> weights){
+		long sum = 0;
+		for(int row = nextRow(gene, 0); row != -1; row = nextRow(gene, row+1)){
+			sum += weights.get(row);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param gene
+	 * @param row
+	 * @return true if gene is mutated in genotype row
+	 */
+	public boolean isMutated(int gene, int row){
+		return (columns[gene][row >>> 6] & (1L << (row & 63))) != 0;
+	}
+
+	/**
+	 * @param gene
+	 * @param from first row to be considered
+	 * @return the first row (from 'from' on) in which gene is mutated, -1 if there is none
+	 */
+	public int nextRow(int gene, int from){
+		long[] column = columns[gene];
+		int w = from >>> 6;
+		if(w >= column.length){
+			return -1;
+		}
+		long word = column[w] & (-1L << (from & 63));
+		while(true){
+			if(word != 0){
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if(++w == column.length){
+				return -1;
+			}
+			word = column[w];
+		}
+	}
+
+	/**
+	 * @param gene
+	 * @return a copy of the bitmap of the rows in which gene is mutated
+	 */
+	public long[] getColumn(int gene){
+		return columns[gene].clone();
+	}
+
+	/**
+	 * @param gene
+	 * @return hash code of the bitmap of gene (genes mutated in the same rows have equal hash codes)
+	 */
+	public int hashColumn(int gene){
+		return Arrays.hashCode(columns[gene]);
+	}
+
+	/**
+	 * @param a gene
+	 * @param b gene
+	 * @return true if genes a and b are mutated in the same rows
+	 */
+	public boolean equalColumns(int a, int b){
+		return Arrays.equals(columns[a], columns[b]);
+	}
+
+	/**
+	 * Selects the most mutated genes: the first thres genes (descending order by
+	 * number of mutations, ties in original order) plus all the following genes
+	 * with the same number of mutations of the last selected one
+	 * @param thres REQUIRE 0 < thres
+	 * @return positions of the selected genes (descending order by number of mutations)
+	 */
+	public int[] topGenes(int thres){
+		return topGenes(counts, thres);
+	}
+
+	/**
+	 * Selection rule of topGenes(thres) applied to arbitrary counters
+	 * @param counts number of mutations of each gene
+	 * @param thres  REQUIRE 0 < thres
+	 * @return positions of the selected genes (descending order by number of mutations)
+	 */
+	static int[] topGenes(int[] counts, int thres){
+		Integer[] order = new Integer[counts.length];
+		for(int i = 0; i<order.length; i++){
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Integer.compare(counts[b], counts[a])); /* stable */
+		int trueThres = Math.min(thres, order.length);
+		if(trueThres > 0){
+			int lastNoOfMutations = counts[order[trueThres-1]];
+			while(trueThres < order.length && counts[order[trueThres]] == lastNoOfMutations){
+				trueThres++;
+			}
+		}
+		int[] ret = new int[trueThres];
+		for(int i = 0; i<trueThres; i++){
+			ret[i] = order[i];
+		}
+		return ret;
+	}
+
+	/**
+	 * Builds the genotypes restricted to some genes
+	 * reading only the bitmaps of the selected genes
+	 * @param genes genes to be kept (in the order of the new genotypes)
+	 * @return the projected genotypes
+	 */
+	public PackedGenotypeStore project(int[] genes){
+		PackedGenotypeStore ret = new PackedGenotypeStore(genes.length, store.size());
+		for(int i = 0; i<store.size(); i++){
+			ret.addEmpty();
+		}
+		for(int j = 0; j<genes.length; j++){
+			for(int row = nextRow(genes[j], 0); row != -1; row = nextRow(genes[j], row+1)){
+				ret.setBit(row, j);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the indexed store
+	 */
+	PackedGenotypeStore getStore(){
+		return store;
+	}
+
+	/**
+	 * @return number of indexed genotypes
+	 */
+	public int getNumberOfRows(){
+		return store.size();
+	}
+
+	/**
+	 * @return number of indexed genes
+	 */
+	public int getNumberOfGenes(){
+		return counts.length;
+	}
+
+}
@@ -1,16 +1,30 @@
 package Datasets;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Scanner;
 import java.util.StringTokenizer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import Utils.Pair;
-import Utils.Quadruplet;
-import Utils.Triplet;
 import Utils.Utils;
 
 /**
@@ -22,6 +36,7 @@ import Utils.Utils;
  * SampleName_2 ValueOf_2(Gene_1) ValueOf_2(Gene_2) ... ValueOf_2(Gene_n)
  * ...
  * SampleName_n ValueOf_n(Gene_1) ValueOf_n(Gene_2) ... ValueOf_n(Gene_n)
+ * (CAPRI and sparse formats are also supported, see readCAPRI and readSparse)
  *
  * @author rossi
  *
@@ -44,17 +59,47 @@ public class Dataset {
 	 */
 	private ArrayList<String> labels = new ArrayList<String>();
 	/**
-	 * genotypes present in the data set
+	 * genes names before collapseEquivalentGenes() (null if no gene was collapsed)
 	 */
-	private ArrayList<boolean[]>  genotypes = new ArrayList<boolean[]>();
+	private ArrayList<String> originalLabels = null;
 	/**
-	 * Manages sample IDs
+	 * positions in originalLabels of the genes represented by each gene (null if no gene was collapsed)
 	 */
-	private ArrayList<ArrayList<String>> samples = new ArrayList<ArrayList<String>>();
+	private ArrayList<int[]> originalGenes = null;
+	/**
+	 * genotypes present in the data set (packed in long words)
+	 */
+	private PackedGenotypeStore genotypes = new PackedGenotypeStore(0);
+	/**
+	 * names of all the samples read (each stored once)
+	 */
+	private SampleDictionary sampleNames = new SampleDictionary();
+	/**
+	 * true if sampleNames is shared with a view (see shrunkView), it is copied before adding a name
+	 */
+	private boolean sharedSampleNames = false;
+	/**
+	 * ids (in sampleNames) of the samples of each genotype
+	 * (read only list mapped from a file after load(), see materializeLists)
+	 */
+	private List<int[]> samples = new ArrayList<int[]>();
+	/**
+	 * column index of genotypes (see getColumnIndex())
+	 */
+	private ColumnIndex columnIndex = null;
 	/**
 	 * number of times a given genotype is present in the dataset (always 1 if data set is not compacted)
+	 * (read only list mapped from a file after load(), see materializeLists)
+	 */
+	private List<Integer> frequencies =  new ArrayList<Integer>();
+	/**
+	 * minimum number of genotypes for which compact() works in parallel
 	 */
-	private ArrayList<Integer> frequencies =  new ArrayList<Integer>();
+	private static final int PARALLEL_COMPACT_THRESHOLD = 1 << 14;
+	/**
+	 * minimum size in bytes of a chunk parsed by a single thread
+	 */
+	private static final long MIN_PARALLEL_CHUNK = 1 << 20;
 	
 	public Dataset(){
 	}
@@ -64,14 +109,19 @@ public class Dataset {
 	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
 	 */
 	public void read() throws DatasetAlreadyInitializedException{
+		read(ReaderMode.SCANNER);
+	}
+	
+	/**
+	 * read data set from STDIN
+	 * @param mode reader to be used
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void read(ReaderMode mode) throws DatasetAlreadyInitializedException{
 		if(initialized){
 			throw new DatasetAlreadyInitializedException();
 		}
-		Scanner in = new Scanner(System.in);
-		readData(in);
-		in.close();
-		initialized=true;
-		filterClonalGenotypes();
+		readStream(System.in, false, mode);
 	}
 	
 	/**
@@ -80,19 +130,20 @@ public class Dataset {
 	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
 	 */
 	public void read(String path) throws DatasetAlreadyInitializedException{
+		read(path, ReaderMode.SCANNER);
+	}
+	
+	/**
+	 * read data set from a file
+	 * @param path to input file
+	 * @param mode reader to be used
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void read(String path, ReaderMode mode) throws DatasetAlreadyInitializedException{
 		if(initialized){
 			throw new DatasetAlreadyInitializedException();
 		}
-		try {
-			Scanner in = new Scanner(new File(path));
-			readData(in);
-			in.close();
-			initialized=true;
-			filterClonalGenotypes();
-		} catch (FileNotFoundException e) {
-			System.err.println("Error in reading input file!");
-			e.printStackTrace();
-		}
+		readFile(path, false, mode);
 	}
 	
 	/**
@@ -100,14 +151,19 @@ public class Dataset {
 	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
 	 */
 	public void readCAPRI() throws DatasetAlreadyInitializedException{
+		readCAPRI(ReaderMode.SCANNER);
+	}
+	
+	/**
+	 * read data set from STDIN in CAPRI format
+	 * @param mode reader to be used
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void readCAPRI(ReaderMode mode) throws DatasetAlreadyInitializedException{
 		if(initialized){
 			throw new DatasetAlreadyInitializedException();
 		}
-		Scanner in = new Scanner(System.in);
-		readDataCAPRI(in);
-		in.close();
-		initialized=true;
-		filterClonalGenotypes();
+		readStream(System.in, true, mode);
 	}
 	
 	/**
@@ -116,21 +172,251 @@ public class Dataset {
 	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
 	 */
 	public void readCAPRI(String path) throws DatasetAlreadyInitializedException{
+		readCAPRI(path, ReaderMode.SCANNER);
+	}
+	
+	/**
+	 * read data set from a file in CAPRI format
+	 * @param path to input file
+	 * @param mode reader to be used
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void readCAPRI(String path, ReaderMode mode) throws DatasetAlreadyInitializedException{
+		if(initialized){
+			throw new DatasetAlreadyInitializedException();
+		}
+		readFile(path, true, mode);
+	}
+	
+	/**
+	 * read a data set from a file keeping only the top mutated genes,
+	 * the result is the same of read(path), compact() and shrink(thres)
+	 * but only the kept genes are stored in memory (the file is read twice,
+	 * see StreamingShrink for the limits of the counting pass)
+	 * @param path  to input file
+	 * @param thres number of genes to be kept (see shrink)
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 * @throws InvalidThresholdException if thres is not a positive number 
+	 */
+	public void readShrunk(String path, int thres) throws DatasetAlreadyInitializedException, InvalidThresholdException{
+		readFileShrunk(path, false, thres);
+	}
+	
+	/**
+	 * read a data set from a file in CAPRI format keeping only the top mutated genes
+	 * (see readShrunk)
+	 * @param path  to input file
+	 * @param thres number of genes to be kept (see shrink)
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 * @throws InvalidThresholdException if thres is not a positive number 
+	 */
+	public void readCAPRIShrunk(String path, int thres) throws DatasetAlreadyInitializedException, InvalidThresholdException{
+		readFileShrunk(path, true, thres);
+	}
+	
+	/**
+	 * two pass reading of a file (see StreamingShrink),
+	 * samples of the same genotype are listed in input order
+	 * @param path  to input file
+	 * @param capri true for CAPRI format
+	 * @param thres number of genes to be kept
+	 */
+	private void readFileShrunk(String path, boolean capri, int thres) {
 		if(initialized){
 			throw new DatasetAlreadyInitializedException();
 		}
+		if(thres<=0){
+			throw new InvalidThresholdException(thres);
+		}
+		StreamingShrink reader = new StreamingShrink(path, capri);
 		try {
-			Scanner in = new Scanner(new File(path));
-			readDataCAPRI(in);
-			in.close();
-			initialized=true;
-			filterClonalGenotypes();
+			/* first pass: count genes frequency */
+			int[] counts = reader.countMutations();
+			int[] selectedGenes;
+			if(thres>=counts.length){
+				selectedGenes = IntStream.range(0, counts.length).toArray();
+			}else{
+				selectedGenes = ColumnIndex.topGenes(counts, thres);
+			}
+			/* second pass: read only the selected genes */
+			genotypes = new PackedGenotypeStore(selectedGenes.length);
+			reader.readSelected(selectedGenes, genotypes, samples, sampleNames);
+			for(int i = 0; i<selectedGenes.length; i++){
+				labels.add(reader.getLabels().get(selectedGenes[i]));
+			}
+		} catch (FileNotFoundException e) {
+			System.err.println("Error in reading input file!");
+			e.printStackTrace();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		for(int i = 0; i<genotypes.size(); i++){
+			frequencies.add(1);
+		}
+		numberOfEntries = genotypes.size();
+		initialized=true;
+		filterClonalGenotypes();
+		compact();
+	}
+	
+	/**
+	 * read data set from STDIN in sparse format
+	 * (a "sampleName geneName" line for each mutation, see readDataSparse)
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void readSparse() throws DatasetAlreadyInitializedException{
+		if(initialized){
+			throw new DatasetAlreadyInitializedException();
+		}
+		try(MatrixTokenizer in = new MatrixTokenizer(System.in)){
+			readDataSparse(in);
+		}
+	}
+	
+	/**
+	 * read data set from a file in sparse format
+	 * (a "sampleName geneName" line for each mutation, see readDataSparse)
+	 * @param path to input file
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void readSparse(String path) throws DatasetAlreadyInitializedException{
+		if(initialized){
+			throw new DatasetAlreadyInitializedException();
+		}
+		try(MatrixTokenizer in = new MatrixTokenizer(new FileInputStream(path))){
+			readDataSparse(in);
 		} catch (FileNotFoundException e) {
 			System.err.println("Error in reading input file!");
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * effectively reads a data set in sparse format:
+	 * SampleName_i GeneName_j (one line for each mutation, other columns are ignored)
+	 * genes and samples are numbered in order of first appearance,
+	 * samples without mutations are not listed (they would be filtered anyway)
+	 * @param in tokenizer on the input
+	 */
+	private void readDataSparse(MatrixTokenizer in) {
+		HashMap<String, Integer> sampleIds = new HashMap<String, Integer>();
+		HashMap<String, Integer> geneIds = new HashMap<String, Integer>();
+		/* mutations as (sample, gene) pairs of ids */
+		int[] pairs = new int[1024];
+		int nPairs = 0;
+		
+		while(in.hasNext()){
+			String sample = in.next();
+			String gene = in.next();
+			in.skipLine();
+			Integer sampleId = sampleIds.get(sample);
+			if(sampleId == null){
+				sampleId = sampleIds.size();
+				sampleIds.put(sample, sampleId);
+				samples.add(new int[]{sampleNames.add(sample)});
+				frequencies.add(1);
+			}
+			Integer geneId = geneIds.get(gene);
+			if(geneId == null){
+				geneId = geneIds.size();
+				geneIds.put(gene, geneId);
+				labels.add(gene);
+			}
+			if(2*nPairs+2 > pairs.length){
+				pairs = Arrays.copyOf(pairs, pairs.length*2);
+			}
+			pairs[2*nPairs] = sampleId;
+			pairs[2*nPairs+1] = geneId;
+			nPairs++;
+		}
+		
+		genotypes = new PackedGenotypeStore(labels.size(), samples.size());
+		for(int i = 0; i<samples.size(); i++){
+			genotypes.addEmpty();
+		}
+		for(int k = 0; k<nPairs; k++){
+			genotypes.setBit(pairs[2*k], pairs[2*k+1]);
+		}
+		
+		numberOfEntries = genotypes.size();
+		initialized=true;
+		filterClonalGenotypes();
+	}
+	
+	/**
+	 * read data set from a file with the chosen reader
+	 * @param path  to input file
+	 * @param capri true for CAPRI format, false for BML format
+	 * @param mode  reader to be used
+	 */
+	private void readFile(String path, boolean capri, ReaderMode mode) {
+		try {
+			if(mode == ReaderMode.PARALLEL && capri){
+				try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+					readDataCAPRIParallel(channel, Runtime.getRuntime().availableProcessors(), MIN_PARALLEL_CHUNK);
+				}
+				initialized=true;
+				filterClonalGenotypes();
+			}else if(mode == ReaderMode.MAPPED || mode == ReaderMode.PARALLEL){
+				try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+						MatrixTokenizer tok = new MatrixTokenizer(channel)){
+					readTokens(tok, capri);
+				}
+			}else{
+				readStream(new FileInputStream(path), capri, mode);
+			}
+		} catch (FileNotFoundException | NoSuchFileException e) {
+			System.err.println("Error in reading input file!");
+			e.printStackTrace();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * read data set from a stream with the chosen reader
+	 * @param in    input stream (closed at the end)
+	 * @param capri true for CAPRI format, false for BML format
+	 * @param mode  reader to be used
+	 */
+	private void readStream(InputStream in, boolean capri, ReaderMode mode) {
+		switch(mode){
+		case STREAM:
+		case MAPPED: /* streams can not be mapped */
+		case PARALLEL:
+			try(MatrixTokenizer tok = new MatrixTokenizer(in)){
+				readTokens(tok, capri);
+			}
+			break;
+		default:
+			Scanner sc = new Scanner(in);
+			if(capri){
+				readDataCAPRI(sc);
+			}else{
+				readData(sc);
+			}
+			sc.close();
+			initialized=true;
+			filterClonalGenotypes();
+			break;
+		}
+	}
+	
+	/**
+	 * read data set with the byte level tokenizer
+	 * @param tok   tokenizer on the input
+	 * @param capri true for CAPRI format, false for BML format
+	 */
+	private void readTokens(MatrixTokenizer tok, boolean capri) {
+		if(capri){
+			readDataCAPRI(tok);
+		}else{
+			readData(tok);
+		}
+		initialized=true;
+		filterClonalGenotypes();
+	}
+	
 	/**
 	 * effectively reads a data set from a stream
 	 * @param in input stream
@@ -142,16 +428,16 @@ public class Dataset {
 		for(int i = 0; i<nGenes; i++){
 			this.labels.add(in.next());
 		}
+		genotypes = new PackedGenotypeStore(nGenes, nSamples);
 		
 		for(int i = 0; i<nSamples; i++){
-			ArrayList<String> sample = new ArrayList<String>();
-			sample.add(in.next()); // sample name
-			samples.add(sample);
-			boolean[] genotype = new boolean[nGenes];
+			samples.add(new int[]{sampleNames.add(in.next())}); // sample name
+			int row = genotypes.addEmpty();
 			for(int j=0; j<nGenes; j++){
-				genotype[j] = (in.nextInt()==1)?true:false;
+				if(in.nextInt()==1){
+					genotypes.setBit(row, j);
+				}
 			}
-			genotypes.add(genotype);
 			frequencies.add(1);
 		}
 		
@@ -173,26 +459,183 @@ public class Dataset {
 			this.labels.add(tok.nextToken());
 			nGenes++;
 		}
-		
+		genotypes = new PackedGenotypeStore(nGenes);
 		
 		
 		while(in.hasNext()){
 			
 			StringTokenizer line = new StringTokenizer(in.nextLine());			
-			ArrayList<String> sample = new ArrayList<String>();
-			sample.add(line.nextToken()); // sample name
-			samples.add(sample);
-			boolean[] genotype = new boolean[nGenes];
+			samples.add(new int[]{sampleNames.add(line.nextToken())}); // sample name
+			int row = genotypes.addEmpty();
 			for(int j=0; j<nGenes; j++){
-				genotype[j] = (Integer.parseInt(line.nextToken())==1)?true:false;
+				if(Integer.parseInt(line.nextToken())==1){
+					genotypes.setBit(row, j);
+				}
 			}
-			genotypes.add(genotype);
 			frequencies.add(1);
 		}
 		
 		numberOfEntries = genotypes.size();
 	}
 
+	/**
+	 * effectively reads a data set from a stream (byte level tokenizer)
+	 * @param in tokenizer on the input stream
+	 */
+	private void readData(MatrixTokenizer in) {
+		int nSamples = in.nextInt();
+		int nGenes   = in.nextInt();
+		
+		for(int i = 0; i<nGenes; i++){
+			this.labels.add(in.next());
+		}
+		genotypes = new PackedGenotypeStore(nGenes, nSamples);
+		
+		for(int i = 0; i<nSamples; i++){
+			samples.add(new int[]{in.nextName(sampleNames)}); // sample name
+			int row = genotypes.addEmpty();
+			for(int j=0; j<nGenes; j++){
+				if(in.nextCell()){
+					genotypes.setBit(row, j);
+				}
+			}
+			frequencies.add(1);
+		}
+		
+		numberOfEntries = genotypes.size();
+	}
+	
+	/**
+	 * effectively reads a data set in CAPRI format from a stream (byte level tokenizer)
+	 * @param in tokenizer on the input stream
+	 */
+	private void readDataCAPRI(MatrixTokenizer in) {
+		
+		in.next(); // first element is not important
+		
+		int nGenes   = 0;
+		
+		while(in.hasNextOnLine()){
+			this.labels.add(in.next());
+			nGenes++;
+		}
+		in.skipLine();
+		genotypes = new PackedGenotypeStore(nGenes);
+		
+		while(in.hasNext()){
+			samples.add(new int[]{in.nextName(sampleNames)}); // sample name
+			int row = genotypes.addEmpty();
+			for(int j=0; j<nGenes; j++){
+				if(in.nextCell()){
+					genotypes.setBit(row, j);
+				}
+			}
+			in.skipLine();
+			frequencies.add(1);
+		}
+		
+		numberOfEntries = genotypes.size();
+	}
+
+	/**
+	 * effectively reads a data set in CAPRI format from a file:
+	 * after the header, rows are split in newline aligned chunks that are
+	 * parsed in parallel and then concatenated in the original order
+	 * @param channel input file
+	 * @param chunks   maximum number of chunks
+	 * @param minChunk minimum size in bytes of a chunk
+	 * @throws IOException 
+	 */
+	void readDataCAPRIParallel(FileChannel channel, int chunks, long minChunk) throws IOException {
+		long size = channel.size();
+		MatrixTokenizer header = new MatrixTokenizer(channel, 0, size, MatrixTokenizer.WINDOW_SIZE);
+		header.next(); // first element is not important
+		while(header.hasNextOnLine()){
+			this.labels.add(header.next());
+		}
+		header.skipLine();
+		final int nGenes = labels.size();
+		
+		/* newline aligned chunk borders */
+		long start = header.getOffset();
+		chunks = (int) Math.max(1, Math.min(chunks, (size - start) / minChunk));
+		long[] borders = new long[chunks+1];
+		borders[0] = start;
+		borders[chunks] = size;
+		for(int c = 1; c<chunks; c++){
+			borders[c] = Math.max(borders[c-1], nextLineStart(channel, start + (size - start)*c/chunks));
+		}
+		
+		/* parse chunks */
+		List<Pair<PackedGenotypeStore, SampleDictionary>> blocks = IntStream.range(0, chunks).parallel().mapToObj(c -> 
+			readCAPRIChunk(new MatrixTokenizer(channel, borders[c], borders[c+1], MatrixTokenizer.WINDOW_SIZE), nGenes)
+		).collect(Collectors.toList()); /* in order of the chunks */
+		
+		/* concatenate */
+		int nSamples = 0;
+		for(Pair<PackedGenotypeStore, SampleDictionary> block : blocks){
+			nSamples += block.fst().size();
+		}
+		genotypes = new PackedGenotypeStore(nGenes, nSamples);
+		for(Pair<PackedGenotypeStore, SampleDictionary> block : blocks){
+			genotypes.addAll(block.fst());
+			SampleDictionary names = block.snd();
+			for(int id = 0; id<names.size(); id++){
+				samples.add(new int[]{sampleNames.add(names.getBlob(), names.encodedOffset(id), names.encodedLength(id))});
+				frequencies.add(1);
+			}
+		}
+		
+		numberOfEntries = genotypes.size();
+	}
+	
+	/**
+	 * @param channel  input file
+	 * @param position a position in the file
+	 * @return the position of the first line starting at or after 'position'
+	 * @throws IOException
+	 */
+	private static long nextLineStart(FileChannel channel, long position) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(4096);
+		long pos = position - 1; /* position itself starts a line if the previous byte is '\n' */
+		while(pos < channel.size()){
+			buf.clear();
+			int read = channel.read(buf, Math.max(pos, 0));
+			if(read <= 0){
+				break;
+			}
+			for(int i = 0; i<read; i++){
+				if(buf.get(i) == '\n'){
+					return Math.max(pos, 0) + i + 1;
+				}
+			}
+			pos = Math.max(pos, 0) + read;
+		}
+		return channel.size();
+	}
+	
+	/**
+	 * reads the rows of a CAPRI chunk
+	 * @param in     tokenizer on the chunk
+	 * @param nGenes number of genes of each row
+	 * @return genotypes and sample names of the chunk
+	 */
+	private static Pair<PackedGenotypeStore, SampleDictionary> readCAPRIChunk(MatrixTokenizer in, int nGenes) {
+		PackedGenotypeStore block = new PackedGenotypeStore(nGenes);
+		SampleDictionary names = new SampleDictionary();
+		while(in.hasNext()){
+			in.nextName(names); // sample name
+			int row = block.addEmpty();
+			for(int j=0; j<nGenes; j++){
+				if(in.nextCell()){
+					block.setBit(row, j);
+				}
+			}
+			in.skipLine();
+		}
+		return new Pair<PackedGenotypeStore, SampleDictionary>(block, names);
+	}
+
 	/**
 	 * Initialize this data set manually 
 	 * @param labels for genes
@@ -206,59 +649,434 @@ public class Dataset {
 		for(String l : labels){
 			this.labels.add(l);
 		}
+		genotypes = new PackedGenotypeStore(labels.length, data.length);
 		int i = 0;
 		for(boolean[] genotype : data){
 			i++;
 			genotypes.add(genotype);
 			frequencies.add(1);
-			ArrayList<String> s = new ArrayList<String>();
-			s.add("s_" + i);
-			samples.add(s);
+			samples.add(new int[]{sampleNames.add("s_" + i)});
 		}
 		numberOfEntries = genotypes.size();
 		initialized = true;
 		filterClonalGenotypes();
 	}
 	
+	/**
+	 * Adds a sample to this compacted data set: the frequency of its genotype is increased
+	 * or the genotype is inserted keeping the order of compact()
+	 * (non mutated genotypes are ignored as in the readers)
+	 * @param sampleName name of the sample
+	 * @param genotype   REQUIRE |genotype| = getNumberOfGenes()
+	 * @return position of the updated or inserted genotype, -1 if the genotype was ignored
+	 * @throws NotAlreadyCompactedException when this is not compacted 
+	 */
+	public int append(String sampleName, boolean[] genotype) throws NotAlreadyCompactedException{
+		if(!compacted){
+			throw new NotAlreadyCompactedException();
+		}
+		assert(genotype.length == getNumberOfGenes()): "Incompatible genotype";
+		long[] packed = Utils.pack(genotype);
+		int mutations = mutationCount(packed);
+		if(mutations == 0){
+			return -1;
+		}
+		if(sharedSampleNames){
+			sampleNames = sampleNames.copy();
+			sharedSampleNames = false;
+		}
+		int id = sampleNames.add(sampleName);
+		materializeLists();
+		int position = findGenotype(packed, mutations);
+		if(position >= 0){
+			int[] ids = samples.get(position);
+			int[] updated = Arrays.copyOf(ids, ids.length+1);
+			updated[ids.length] = id;
+			samples.set(position, updated);
+			frequencies.set(position, frequencies.get(position)+1);
+		}else{
+			position = -position-1;
+			genotypes.insert(position, packed);
+			samples.add(position, new int[]{id});
+			frequencies.add(position, 1);
+			columnIndex = null; /* genotypes changed in place */
+		}
+		numberOfEntries++;
+		return position;
+	}
+	
+	/**
+	 * Copies on the heap the frequencies and the samples read from a binary file
+	 * (see load), before they are modified in place
+	 */
+	private void materializeLists(){
+		if(!(frequencies instanceof ArrayList)){
+			frequencies = new ArrayList<Integer>(frequencies);
+		}
+		if(!(samples instanceof ArrayList)){
+			samples = new ArrayList<int[]>(samples);
+		}
+	}
+	
+	/**
+	 * Adds some samples to this compacted data set (see append(String, boolean[]))
+	 * @param sampleNames names of the samples
+	 * @param data        genotypes of the samples
+	 * @return positions (after all the insertions, ascending order) of the genotypes that changed
+	 * @throws NotAlreadyCompactedException when this is not compacted 
+	 */
+	public ArrayList<Integer> append(String[] sampleNames, boolean[][] data) throws NotAlreadyCompactedException{
+		ArrayList<long[]> changed = new ArrayList<long[]>();
+		for(int i = 0; i<data.length; i++){
+			if(append(sampleNames[i], data[i]) != -1){
+				changed.add(Utils.pack(data[i]));
+			}
+		}
+		/* positions are resolved at the end because insertions shift the following genotypes */
+		ArrayList<Integer> ret = new ArrayList<Integer>();
+		for(long[] packed : changed){
+			ret.add(findGenotype(packed, mutationCount(packed)));
+		}
+		Collections.sort(ret);
+		for(int i = ret.size()-1; i>0; i--){
+			if(ret.get(i).equals(ret.get(i-1))){
+				ret.remove(i);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Merges some data sets (e.g. shards of a cohort compacted independently, see save/load)
+	 * in a new compacted data set. Genes are identified by their labels: the genes of the result
+	 * are all the genes of the parts in order of first appearance, a gene absent from a part
+	 * is considered not mutated in its samples. Frequencies and samples of equal genotypes are summed
+	 * (samples in the order of the parts), so merging is associative.
+	 * The collapsed genes of a part (see collapseEquivalentGenes) are expanded in their original
+	 * genes, so the result has no collapsed gene.
+	 * @param parts initialized data sets (not modified)
+	 * @return the merged data set
+	 */
+	public static Dataset merge(Dataset... parts){
+		Dataset ret = new Dataset();
+		
+		/* reconcile genes */
+		HashMap<String, Integer> geneIds = new HashMap<String, Integer>();
+		for(Dataset part : parts){
+			for(String label : part.originalGenes == null ? part.labels : part.originalLabels){
+				if(!geneIds.containsKey(label)){
+					geneIds.put(label, ret.labels.size());
+					ret.labels.add(label);
+				}
+			}
+		}
+		
+		/* concatenate the genotypes in the space of all the genes */
+		int size = 0;
+		for(Dataset part : parts){
+			size += part.genotypes.size();
+		}
+		ret.genotypes = new PackedGenotypeStore(ret.labels.size(), size);
+		for(Dataset part : parts){
+			/* positions in ret of the (original) genes of each gene of part */
+			int[][] newPositions = new int[part.labels.size()][];
+			for(int j = 0; j<newPositions.length; j++){
+				if(part.originalGenes == null){
+					newPositions[j] = new int[]{geneIds.get(part.labels.get(j))};
+				}else{
+					int[] originals = part.originalGenes.get(j);
+					newPositions[j] = new int[originals.length];
+					for(int k = 0; k<originals.length; k++){
+						newPositions[j][k] = geneIds.get(part.originalLabels.get(originals[k]));
+					}
+				}
+			}
+			int[] newId = new int[part.sampleNames.size()];
+			Arrays.fill(newId, -1);
+			for(int i = 0; i<part.genotypes.size(); i++){
+				int row = ret.genotypes.addEmpty();
+				for(int w = 0; w<part.genotypes.getWordsPerRow(); w++){
+					long word = part.genotypes.getWord(i, w);
+					while(word != 0){
+						int bit = Long.numberOfLeadingZeros(word);
+						for(int position : newPositions[(w << 6) + bit]){
+							ret.genotypes.setBit(row, position);
+						}
+						word &= ~(Long.MIN_VALUE >>> bit);
+					}
+				}
+				int[] ids = part.samples.get(i).clone();
+				for(int k = 0; k<ids.length; k++){
+					if(newId[ids[k]] == -1){
+						newId[ids[k]] = ret.sampleNames.add(part.sampleNames.getBlob(), 
+								part.sampleNames.encodedOffset(ids[k]), part.sampleNames.encodedLength(ids[k]));
+					}
+					ids[k] = newId[ids[k]];
+				}
+				ret.samples.add(ids);
+				ret.frequencies.add(part.frequencies.get(i));
+			}
+			ret.numberOfEntries += part.numberOfEntries;
+		}
+		
+		ret.initialized = true;
+		ret.compact();
+		return ret;
+	}
+	
+	/**
+	 * Binary search of a genotype in this compacted data set
+	 * @param packed    genotype to be searched
+	 * @param mutations number of mutations of the genotype
+	 * @return position of the genotype, or (-(insertion point) - 1) if it is not present
+	 */
+	private int findGenotype(long[] packed, int mutations){
+		int low = 0;
+		int high = genotypes.size()-1;
+		while(low <= high){
+			int mid = (low + high) >>> 1;
+			int midMutations = mutationCount(mid);
+			int cmp = midMutations != mutations ? Integer.compare(midMutations, mutations) : genotypes.compare(mid, packed);
+			if(cmp < 0){
+				low = mid+1;
+			}else if(cmp > 0){
+				high = mid-1;
+			}else{
+				return mid;
+			}
+		}
+		return -(low+1);
+	}
+	
 	/**
 	 * Reduces entries of the data set by grouping equal genotypes and
-	 * memorizing their frequency of occurrence 
+	 * memorizing their frequency of occurrence.
+	 * Equal genotypes are grouped with a hash index (in parallel for big data sets),
+	 * then the distinct genotypes are sorted by number of mutations and binary value
 	 */
 	public void compact() {
-
-		ArrayList<Pair<boolean[], Integer>> mutationCounts = countMutations();
-		/* genotype, mutationCounts, observed frequency, sample labels */
-		ArrayList<Quadruplet<boolean[], Integer, Integer, ArrayList<String>>> mutationCountAndFrequency = new ArrayList<Quadruplet<boolean[], Integer, Integer,  ArrayList<String>>>();
-		for (int i = 0; i < mutationCounts.size(); i++) {
-			mutationCountAndFrequency.add(new Quadruplet<boolean[], Integer, Integer, ArrayList<String>>(mutationCounts.get(i).fst(),
-					mutationCounts.get(i).snd(), this.frequencies.get(i),
-					this.samples.get(i)));
-		}
-		Collections.sort(mutationCountAndFrequency, (a, b) -> Utils.genotypeBinaryValueCompare(a.fst(), b.fst()));
-		Collections.sort(mutationCountAndFrequency, (a, b) -> (a.snd() > b.snd()) ? 1 : ((a.snd().equals(b.snd())) ? 0 : -1));
-		collapse(mutationCountAndFrequency);
+		int chunks = genotypes.size() < PARALLEL_COMPACT_THRESHOLD ? 1 : Runtime.getRuntime().availableProcessors();
+		compact(chunks);
+	}
+	
+	/**
+	 * Compacts this data set splitting the work in 'chunks' parts 
+	 * that are grouped in parallel and then merged
+	 * @param chunks number of parts (1 = sequential)
+	 */
+	public void compact(int chunks) {
+		int n = genotypes.size();
+		chunks = Math.max(1, Math.min(chunks, n));
+		
+		/* per chunk partial counts */
+		PartialGroups[] partials = new PartialGroups[chunks];
+		final int numberOfChunks = chunks;
+		IntStream.range(0, chunks).parallel().forEach(c -> 
+			partials[c] = groupChunk((int) ((long) n*c/numberOfChunks), (int) ((long) n*(c+1)/numberOfChunks))
+		);
+		
+		/* merge (in chunk order) */
+		GenotypeIndex index = new GenotypeIndex(genotypes, partials.length == 0 ? 16 : partials[0].index.size());
+		ArrayList<Integer> mergedFrequencies = new ArrayList<Integer>();
+		ArrayList<Integer> mergedNumberOfSamples = new ArrayList<Integer>();
+		for(PartialGroups partial : partials){
+			for(int g = 0; g<partial.index.size(); g++){
+				int group = index.groupOf(partial.index.getRow(g));
+				partial.globalGroup[g] = group;
+				if(group == mergedFrequencies.size()){
+					mergedFrequencies.add(partial.frequencies.get(g));
+					mergedNumberOfSamples.add(partial.numberOfSamples.get(g));
+				}else{
+					mergedFrequencies.set(group, mergedFrequencies.get(group) + partial.frequencies.get(g));
+					mergedNumberOfSamples.set(group, mergedNumberOfSamples.get(group) + partial.numberOfSamples.get(g));
+				}
+			}
+		}
+		
+		/* samples of each group (in the original order), arrays of groups made of a single genotype are reused */
+		int[][] mergedSamples = new int[index.size()][];
+		int[] filled = new int[index.size()];
+		for(PartialGroups partial : partials){
+			for(int i = partial.from; i<partial.from + partial.groupOfRow.length; i++){
+				int group = partial.globalGroup[partial.groupOfRow[i - partial.from]];
+				int[] ids = samples.get(i);
+				if(mergedSamples[group] == null){
+					mergedSamples[group] = ids.length == mergedNumberOfSamples.get(group) ? ids : new int[mergedNumberOfSamples.get(group)];
+				}
+				if(mergedSamples[group] != ids){
+					System.arraycopy(ids, 0, mergedSamples[group], filled[group], ids.length);
+				}
+				filled[group] += ids.length;
+			}
+		}
+		
+		/* single sort of the distinct genotypes: by number of mutations, then by binary value */
+		int[] mutationCounts = new int[index.size()];
+		Integer[] order = new Integer[index.size()];
+		for(int g = 0; g<index.size(); g++){
+			mutationCounts[g] = mutationCount(index.getRow(g));
+			order[g] = g;
+		}
+		Arrays.sort(order, (a, b) -> mutationCounts[a] != mutationCounts[b] ? Integer.compare(mutationCounts[a], mutationCounts[b]) : genotypes.compare(index.getRow(a), index.getRow(b)));
+		
+		/* apply changes */
+		PackedGenotypeStore newGenotypes = new PackedGenotypeStore(genotypes.getNumberOfGenes(), order.length);
+		this.frequencies = new ArrayList<Integer>(order.length);
+		this.samples = new ArrayList<int[]>(order.length);
+		for(int g : order){
+			newGenotypes.add(genotypes, index.getRow(g));
+			this.frequencies.add(mergedFrequencies.get(g));
+			this.samples.add(mergedSamples[g]);
+		}
+		this.genotypes = newGenotypes;
 
 		compacted = true;
 
 	}
+	
+	/**
+	 * Groups the equal genotypes in positions [from, to)
+	 * @param from first genotype 
+	 * @param to   last genotype (excluded)
+	 * @return frequencies and number of samples of each distinct genotype of the chunk
+	 */
+	private PartialGroups groupChunk(int from, int to){
+		PartialGroups partial = new PartialGroups(new GenotypeIndex(genotypes, Math.min(to-from, 1024)), from, to);
+		for(int i = from; i<to; i++){
+			int group = partial.index.groupOf(i);
+			partial.groupOfRow[i-from] = group;
+			if(group == partial.frequencies.size()){
+				partial.frequencies.add(frequencies.get(i));
+				partial.numberOfSamples.add(samples.get(i).length);
+			}else{
+				partial.frequencies.set(group, partial.frequencies.get(group) + frequencies.get(i));
+				partial.numberOfSamples.set(group, partial.numberOfSamples.get(group) + samples.get(i).length);
+			}
+		}
+		partial.globalGroup = new int[partial.index.size()];
+		return partial;
+	}
+	
+	/**
+	 * Distinct genotypes (with their frequencies and number of samples) of a part of the data set
+	 */
+	private static class PartialGroups {
+		final GenotypeIndex index;
+		/**
+		 * first genotype of the part
+		 */
+		final int from;
+		/**
+		 * local group of each genotype of the part
+		 */
+		final int[] groupOfRow;
+		final ArrayList<Integer> frequencies = new ArrayList<Integer>();
+		final ArrayList<Integer> numberOfSamples = new ArrayList<Integer>();
+		/**
+		 * group in the whole data set of each local group (set while merging)
+		 */
+		int[] globalGroup;
+		
+		PartialGroups(GenotypeIndex index, int from, int to){
+			this.index = index;
+			this.from = from;
+			this.groupOfRow = new int[to-from];
+		}
+	}
 
+	/**
+	 * Folds the genotypes observed less than minSupport times into their closest observed subset:
+	 * frequency and samples of a rare genotype are added to the supported genotype (frequency at least minSupport)
+	 * that is its subset with minimal hamming distance (as in GenotypeGraphAllowingMultipleMutations.addEdges,
+	 * in case of ties the last one in the order of the data set), rare genotypes without such a subset are kept.
+	 * The number of entries (and so the total probability) does not change.
+	 * @param minSupport minimum frequency of the genotypes that are not folded
+	 * @return number of folded genotypes
+	 * @throws NotAlreadyCompactedException when this is not compacted 
+	 */
+	public int foldRareGenotypes(int minSupport) throws NotAlreadyCompactedException{
+		if(!compacted){
+			throw new NotAlreadyCompactedException();
+		}
+		int n = genotypes.size();
+		/* genotype into which each genotype is folded (itself if it is kept) */
+		int[] target = new int[n];
+		int folded = 0;
+		for(int i = 0; i<n; i++){
+			target[i] = i;
+			if(frequencies.get(i) >= minSupport){
+				continue;
+			}
+			/* genotypes are sorted by number of mutations: the first subset found is the closest one */
+			for(int j = i-1; j>=0; j--){
+				if(frequencies.get(j) >= minSupport && genotypes.isSubseteq(j, i)){
+					target[i] = j;
+					folded++;
+					break;
+				}
+			}
+		}
+		if(folded == 0){
+			return 0;
+		}
+		
+		/* frequencies and samples of the kept genotypes */
+		int[] newFrequencies = new int[n];
+		int[] numberOfSamples = new int[n];
+		for(int i = 0; i<n; i++){
+			newFrequencies[target[i]] += frequencies.get(i);
+			numberOfSamples[target[i]] += samples.get(i).length;
+		}
+		int[][] newSamples = new int[n][];
+		int[] filled = new int[n];
+		for(int i = 0; i<n; i++){
+			int t = target[i];
+			if(newSamples[t] == null){
+				newSamples[t] = numberOfSamples[t] == samples.get(i).length ? samples.get(i) : new int[numberOfSamples[t]];
+			}
+			if(newSamples[t] != samples.get(i)){
+				System.arraycopy(samples.get(i), 0, newSamples[t], filled[t], samples.get(i).length);
+			}
+			filled[t] += samples.get(i).length;
+		}
+		
+		PackedGenotypeStore kept = new PackedGenotypeStore(genotypes.getNumberOfGenes(), n-folded);
+		ArrayList<Integer> keptFrequencies = new ArrayList<Integer>(n-folded);
+		ArrayList<int[]> keptSamples = new ArrayList<int[]>(n-folded);
+		for(int i = 0; i<n; i++){
+			if(target[i] == i){
+				kept.add(genotypes, i);
+				keptFrequencies.add(newFrequencies[i]);
+				keptSamples.add(newSamples[i]);
+			}
+		}
+		this.genotypes = kept;
+		this.frequencies = keptFrequencies;
+		this.samples = keptSamples;
+		return folded;
+	}
+	
 	/**
 	 * Eliminates non mutated genotypes present in the data set
 	 */
 	private void filterClonalGenotypes() {
-		ArrayList<boolean[]> cleaned = new ArrayList<boolean[]>();
+		PackedGenotypeStore cleaned = new PackedGenotypeStore(genotypes.getNumberOfGenes(), genotypes.size());
 		ArrayList<Integer> cleanedFrequencies = new ArrayList<Integer>();
+		ArrayList<int[]> cleanedSamples = new ArrayList<int[]>();
 		
 		for(int i=0; i<genotypes.size(); i++){
-			if(Utils.sumBool(genotypes.get(i))!=0){
-				cleaned.add(genotypes.get(i));
+			if(genotypes.mutationCount(i)!=0){
+				cleaned.add(genotypes, i);
 				cleanedFrequencies.add(frequencies.get(i));
+				cleanedSamples.add(samples.get(i));
 			}else{
 				this.numberOfEntries-=frequencies.get(i);
 			}
 		}
 		
 		this.genotypes=cleaned;
+		this.frequencies=cleanedFrequencies;
+		this.samples=cleanedSamples;
 	}
 	
 	/**
@@ -274,70 +1092,70 @@ public class Dataset {
 			return;
 		}
 		
-		/* count genes frequency */
+		/* select thres genes + all the genes with the same amount of mutations of the last kept one */
 		
-		int[] counts = new int[this.getNumberOfGenes()];
-		for(int i=0; i<this.genotypes.size(); i++){   
-			for(int j=0; j<this.genotypes.get(i).length; j++){
-				counts[j]+=this.genotypes.get(i)[j]?1:0;
-			}
-		}
-		
-		/* <position, number of mutations, label> */
-		ArrayList<Triplet<Integer,Integer,String>> genes = new ArrayList<Triplet<Integer,Integer,String>>();
-		for(int i = 0; i<this.labels.size(); i++){
-			genes.add(new Triplet<Integer,Integer,String>(i, counts[i], labels.get(i)));
-		}
+		ColumnIndex index = getColumnIndex();
+		int[] selectedGenes = index.topGenes(thres);
 		
-		/* sort genes (descending order by number of mutations) */
-		
-		Collections.sort(genes, (a,b) -> a.snd()>b.snd()?-1:a.snd()==b.snd()?0:1);
+		/* update data set */
 		
-		/* keep thres genes + all the genes with the same amount of mutations of any of the kept ones */
+		reconstructDataset(index, selectedGenes);
 		
-		int trueThres = thres;
-		int lastNoOfMutations = genes.get(trueThres-1).snd();
-		for(int i = thres; i<genes.size(); i++){
-			if(genes.get(i).snd() == lastNoOfMutations){
-				trueThres++;
-			}else{
-				break;
-			}
+	}
+	
+	/**
+	 * Projection of this compacted data set on its top mutated genes (same result of shrink(thres)),
+	 * this data set is not modified. Only the distinct genotypes are projected (using the column index,
+	 * that is shared by successive calls) and regrouped, while sample names and lists are shared,
+	 * so trying several thresholds does not copy the original matrix.
+	 * The sample names are copied by the first append to the view (or to this data set) after sharing.
+	 * @param thres number of genes to be kept (see shrink)
+	 * @return the projected data set (compacted)
+	 * @throws InvalidThresholdException if thres is not a positive number 
+	 * @throws NotAlreadyCompactedException when this is not compacted 
+	 */
+	public Dataset shrunkView(int thres) throws InvalidThresholdException, NotAlreadyCompactedException{
+		if(thres<=0){
+			throw new InvalidThresholdException(thres);
 		}
-		
-		ArrayList<Triplet<Integer,Integer,String>> selectedGenes = new ArrayList<Triplet<Integer,Integer,String>>();
-		
-		for(int i = 0; i<trueThres; i++){
-			selectedGenes.add(genes.get(i));
+		if(!compacted){
+			throw new NotAlreadyCompactedException();
 		}
+		ColumnIndex index = getColumnIndex();
+		int[] selectedGenes = thres>=this.labels.size() ? IntStream.range(0, this.labels.size()).toArray() : index.topGenes(thres);
 		
-		/* update data set */
-		
-		reconstructDataset(selectedGenes);
-		
+		Dataset ret = new Dataset();
+		for(int gene : selectedGenes){
+			ret.labels.add(labels.get(gene));
+		}
+		selectOriginalGenes(ret, selectedGenes);
+		ret.genotypes = index.project(selectedGenes);
+		ret.frequencies = new ArrayList<Integer>(frequencies);
+		ret.samples = new ArrayList<int[]>(samples);
+		ret.sampleNames = sampleNames;
+		ret.sharedSampleNames = sharedSampleNames = true;
+		ret.numberOfEntries = numberOfEntries;
+		ret.initialized = true;
+		ret.filterClonalGenotypes();
+		ret.compact();
+		return ret;
 	}
 	
 	/**
 	 * reconstruct data set after having reduced the number of considered genes 
-	 * @param selectedGenes genotypes
+	 * @param index         column index of the current genotypes
+	 * @param selectedGenes positions of the genes to be kept
 	 */
-	private void reconstructDataset(ArrayList<Triplet<Integer, Integer, String>> selectedGenes) {
+	private void reconstructDataset(ColumnIndex index, int[] selectedGenes) {
+		ArrayList<String> oldLabels = labels;
 		labels = new ArrayList<String>();
-		ArrayList<boolean[]> newGenotypes = new ArrayList<boolean[]>();
-		
-		for(boolean[] g : this.genotypes){
-			boolean[] newGenotype = new boolean[selectedGenes.size()];
-			for(int i = 0; i<selectedGenes.size(); i++){
-				newGenotype[i] = g[selectedGenes.get(i).fst()];
-			}
-			newGenotypes.add(newGenotype);
-		}
 		
-		for(int i = 0; i<selectedGenes.size(); i++){
-			labels.add(selectedGenes.get(i).thr());
+		for(int i = 0; i<selectedGenes.length; i++){
+			labels.add(oldLabels.get(selectedGenes[i]));
 		}
+		selectOriginalGenes(this, selectedGenes);
 		
-		this.genotypes = newGenotypes;
+		this.genotypes = index.project(selectedGenes);
 		
 		filterClonalGenotypes();
 		if(compacted){
@@ -346,49 +1164,167 @@ public class Dataset {
 	}
 	
 	/**
-	 * Removes the copies of the same genotype and increases the frequency of that genotype accordingly
-	 * @param mutationCountAndFrequency genotypes REQUIRE sorted by binary number and number of mutations
- 	 */
-	private void collapse(ArrayList<Quadruplet<boolean[], Integer, Integer, ArrayList<String>>> mutationCountAndFrequency) {
-		/* compact: sum frequencies of equal genotypes and keep a single entry in the dataset */
-		boolean[] last = null;
-		ArrayList<Triplet<boolean[], Integer, ArrayList<String>>> compacted = new ArrayList<Triplet<boolean[], Integer, ArrayList<String>>>();
-		ArrayList<String> sampleTemp = new ArrayList<String>();
-		for(int i=0; i<mutationCountAndFrequency.size(); i++){
-			if(last == null || Utils.genotypeBinaryValueCompare(mutationCountAndFrequency.get(i).fst(), last) != 0){
-			   last = mutationCountAndFrequency.get(i).fst();
-			   sampleTemp = new ArrayList<String>();
-			   sampleTemp.addAll(mutationCountAndFrequency.get(i).four());
-			   compacted.add(new Triplet<boolean[], Integer, ArrayList<String>>(last , mutationCountAndFrequency.get(i).thr(), sampleTemp));
-			}else{
-				compacted.get(compacted.size()-1).thr().addAll(mutationCountAndFrequency.get(i).four());
-				compacted.set(compacted.size()-1, new Triplet<boolean[], Integer, ArrayList<String>>(last , compacted.get(compacted.size()-1).snd()+mutationCountAndFrequency.get(i).thr(),
-						compacted.get(compacted.size()-1).thr()));
+	 * Sets the original genes of target after a selection of the genes of this data set
+	 * @param target        data set with the selected genes (it can be this)
+	 * @param selectedGenes positions of the selected genes in this data set
+	 */
+	private void selectOriginalGenes(Dataset target, int[] selectedGenes){
+		if(originalGenes != null){
+			ArrayList<int[]> selected = new ArrayList<int[]>(selectedGenes.length);
+			for(int gene : selectedGenes){
+				selected.add(originalGenes.get(gene));
 			}
+			target.originalLabels = originalLabels;
+			target.originalGenes = selected;
 		}
-		/* apply changes */
-		this.genotypes = new ArrayList<boolean[]>();
-		this.frequencies = new ArrayList<Integer>();
-		this.samples = new ArrayList<ArrayList<String>>();
-		for(Triplet<boolean[], Integer, ArrayList<String>> p : compacted){
-			this.genotypes.add(p.fst());
-			this.frequencies.add(p.snd());
-			this.samples.add(p.thr());
+	}
+	
+	/**
+	 * Merges the genes that are mutated in exactly the same genotypes (found hashing the columns 
+	 * of the column index) in a single gene labelled with the composite label "GENE1|GENE2|...".
+	 * Genotypes remain distinct and the original genes are remembered: number of mutations and 
+	 * distances (and so the order of a compacted data set and the genotype graphs) are still computed
+	 * on the original genes and translate() lists all of them (see getOriginalLabels).
+	 * shrink() counts a merged gene once
+	 * @return number of genes removed
+	 */
+	public int collapseEquivalentGenes(){
+		ColumnIndex index = getColumnIndex();
+		
+		/* classes of equal columns (in order of their first gene) */
+		HashMap<Integer, ArrayList<Integer>> buckets = new HashMap<Integer, ArrayList<Integer>>();
+		ArrayList<ArrayList<Integer>> classes = new ArrayList<ArrayList<Integer>>();
+		for(int gene = 0; gene<getNumberOfGenes(); gene++){
+			int hash = index.hashColumn(gene);
+			ArrayList<Integer> bucket = buckets.get(hash);
+			if(bucket == null){
+				bucket = new ArrayList<Integer>();
+				buckets.put(hash, bucket);
+			}
+			boolean found = false;
+			for(int c : bucket){
+				if(index.equalColumns(classes.get(c).get(0), gene)){
+					classes.get(c).add(gene);
+					found = true;
+					break;
+				}
+			}
+			if(!found){
+				bucket.add(classes.size());
+				ArrayList<Integer> newClass = new ArrayList<Integer>();
+				newClass.add(gene);
+				classes.add(newClass);
+			}
+		}
+		int removed = getNumberOfGenes() - classes.size();
+		if(removed == 0){
+			return 0;
 		}
+		
+		/* composite labels and original genes */
+		if(originalGenes == null){
+			originalLabels = labels;
+			originalGenes = new ArrayList<int[]>();
+			for(int gene = 0; gene<labels.size(); gene++){
+				originalGenes.add(new int[]{gene});
+			}
+		}
+		ArrayList<String> newLabels = new ArrayList<String>(classes.size());
+		ArrayList<int[]> newOriginalGenes = new ArrayList<int[]>(classes.size());
+		int[] representatives = new int[classes.size()];
+		for(int c = 0; c<classes.size(); c++){
+			ArrayList<Integer> genes = classes.get(c);
+			representatives[c] = genes.get(0);
+			StringBuilder label = new StringBuilder();
+			int[] members = new int[0];
+			for(int gene : genes){
+				label.append(label.length() == 0 ? "" : "|").append(labels.get(gene));
+				int[] current = originalGenes.get(gene);
+				members = Arrays.copyOf(members, members.length + current.length);
+				System.arraycopy(current, 0, members, members.length - current.length, current.length);
+			}
+			Arrays.sort(members);
+			newLabels.add(label.toString());
+			newOriginalGenes.add(members);
+		}
+		labels = newLabels;
+		originalGenes = newOriginalGenes;
+		genotypes = index.project(representatives); /* same order of the original genotypes */
+		return removed;
 	}
-
+	
+	/**
+	 * @param row genotype position
+	 * @return number of mutated original genes of the genotype (see collapseEquivalentGenes)
+	 */
+	private int mutationCount(int row){
+		return originalGenes == null ? genotypes.mutationCount(row) : mutationCount(genotypes.getPacked(row));
+	}
+	
+	/**
+	 * @param genotype packed genotype
+	 * @return number of mutated original genes of the genotype (see collapseEquivalentGenes)
+	 */
+	public int mutationCount(long[] genotype){
+		if(originalGenes == null){
+			return Utils.sumBits(genotype);
+		}
+		int count = 0;
+		for(int w=0; w<genotype.length; w++){
+			long word = genotype[w];
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				count += originalGenes.get((w << 6) + bit).length;
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+		return count;
+	}
+	
 	/**
-	 * counts number of mutations for each genotype
-	 * @return genotypes associated with the number of mutations they contain
+	 * @param a packed genotype
+	 * @param b packed genotype
+	 * @return hamming distance between a and b counted on the original genes (see collapseEquivalentGenes)
 	 */
-	private ArrayList<Pair<boolean[], Integer>> countMutations() {
-		ArrayList<Pair<boolean[], Integer>> ret = new ArrayList<Pair<boolean[], Integer>>();
-		for( boolean[] genotype : genotypes ){
-			ret.add(new Pair<boolean[], Integer>(genotype, Utils.sumBool(genotype)));
+	public int distance(long[] a, long[] b){
+		if(originalGenes == null){
+			return Utils.hammingDistance(a, b);
+		}
+		long[] difference = new long[a.length];
+		for(int w=0; w<a.length; w++){
+			difference[w] = a[w] ^ b[w];
+		}
+		return mutationCount(difference);
+	}
+	
+	/**
+	 * @param gene position
+	 * @return labels of the original genes represented by gene (only gene's label if no gene was collapsed)
+	 */
+	public ArrayList<String> getOriginalLabels(int gene){
+		ArrayList<String> ret = new ArrayList<String>();
+		if(originalGenes == null){
+			ret.add(labels.get(gene));
+		}else{
+			for(int original : originalGenes.get(gene)){
+				ret.add(originalLabels.get(original));
+			}
 		}
 		return ret;
 	}
-
+	
+	/**
+	 * Column major view of the genotypes (bitmap of the genotypes in which each gene is mutated),
+	 * built on first request and rebuilt whenever the genotypes are replaced
+	 * @return the column index of the current genotypes
+	 */
+	public ColumnIndex getColumnIndex(){
+		if(columnIndex == null || columnIndex.getStore() != genotypes){
+			columnIndex = new ColumnIndex(genotypes);
+		}
+		return columnIndex;
+	}
+	
 	/**
 	 * @param  i genotype position 
 	 * @return observed probability of that genotype
@@ -415,12 +1351,27 @@ public class Dataset {
 	
 	/**
 	 * @param i position
-	 * @return genotype at position 'i'
+	 * @return genotype at position 'i' (a copy, as an array of booleans)
 	 */
 	public boolean[] get(int i){
 		return genotypes.get(i);
 	}
 	
+	/**
+	 * @param i position
+	 * @return genotype at position 'i' (a copy, packed in long words)
+	 */
+	public long[] getPacked(int i){
+		return genotypes.getPacked(i);
+	}
+	
+	/**
+	 * @return the packed genotypes of this data set (not a copy, do not modify)
+	 */
+	public PackedGenotypeStore getGenotypeStore(){
+		return genotypes;
+	}
+	
 	/**
 	 * @return the number of genotypes in this dataset
 	 */
@@ -449,6 +1400,9 @@ public class Dataset {
 	 */
 	public ArrayList<String> translate(boolean[] genotype){
 		assert (genotype.length==labels.size()): "Incompatible genotype";
+		if(originalGenes != null){
+			return translate(Utils.pack(genotype));
+		}
 		ArrayList<String> ret = new ArrayList<String>();
 		for(int i=0; i<labels.size(); i++){
 			if(genotype[i]){
@@ -457,6 +1411,43 @@ public class Dataset {
 		}
 		return ret;
 	}
+	
+	/**
+	 * Translates a packed genotype in its relative set of genes labels
+	 * @param genotype packed genotype
+	 * @return a set of labels
+	 */
+	public ArrayList<String> translate(long[] genotype){
+		assert (genotype.length==Utils.wordsFor(labels.size())): "Incompatible genotype";
+		ArrayList<String> ret = new ArrayList<String>();
+		if(originalGenes != null){ /* all the original genes, in their original order */
+			ArrayList<Integer> originals = new ArrayList<Integer>();
+			for(int w=0; w<genotype.length; w++){
+				long word = genotype[w];
+				while(word != 0){
+					int bit = Long.numberOfLeadingZeros(word);
+					for(int original : originalGenes.get((w << 6) + bit)){
+						originals.add(original);
+					}
+					word &= ~(Long.MIN_VALUE >>> bit);
+				}
+			}
+			Collections.sort(originals);
+			for(int original : originals){
+				ret.add(originalLabels.get(original));
+			}
+			return ret;
+		}
+		for(int w=0; w<genotype.length; w++){
+			long word = genotype[w];
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				ret.add(labels.get((w << 6) + bit));
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+		return ret;
+	}
 
 	/**
 	 * @return the number of genes considered in this dataset
@@ -469,34 +1460,97 @@ public class Dataset {
 	 * Print this data set in BML format
 	 */
 	public void printBMLFormat(PrintStream out){
-		out.println(this.getNumberOfGenotypes() + " " + this.getNumberOfGenes());
-		for(String s : labels){
-			out.print(s + " ");
+		MatrixWriter writer = new MatrixWriter(out);
+		writeBMLFormat(writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Print this data set in BML format on a file
+	 * @param path destination file
+	 * @param gzip true to compress the output with GZIP
+	 */
+	public void printBMLFormat(String path, boolean gzip){
+		try {
+			MatrixWriter writer = MatrixWriter.open(path, gzip);
+			writeBMLFormat(writer);
+			writer.close();
+		} catch (IOException e) {
+			System.err.println("Error in writing output file!");
+			e.printStackTrace();
 		}
-		out.println();
-		for(int i = 0; i<this.genotypes.size(); i++){
-			for(int j = 0 ; j<this.frequencyOf(i); j++){
-				out.println(samples.get(i).get(j) + " " + Utils.BoolVecToString(this.genotypes.get(i)));
-			}
+	}
+	
+	/**
+	 * Writes this data set in BML format
+	 * @param out destination (not closed)
+	 */
+	public void writeBMLFormat(MatrixWriter out){
+		out.write(this.getNumberOfGenotypes() + " " + this.getNumberOfGenes());
+		out.newLine();
+		for(String s : labels){
+			out.write(s + " ");
 		}
+		out.newLine();
+		writeRows(out);
 	}
 	
 	/**
 	 * Print this data set in TRONCO format
 	 */
 	public void printTRONCOFormat(PrintStream out){
-		out.print("s\\g ");
+		MatrixWriter writer = new MatrixWriter(out);
+		writeTRONCOFormat(writer);
+		writer.flush();
+	}
+	
+	/**
+	 * Print this data set in TRONCO format on a file
+	 * @param path destination file
+	 * @param gzip true to compress the output with GZIP
+	 */
+	public void printTRONCOFormat(String path, boolean gzip){
+		try {
+			MatrixWriter writer = MatrixWriter.open(path, gzip);
+			writeTRONCOFormat(writer);
+			writer.close();
+		} catch (IOException e) {
+			System.err.println("Error in writing output file!");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Writes this data set in TRONCO format
+	 * @param out destination (not closed)
+	 */
+	public void writeTRONCOFormat(MatrixWriter out){
+		out.write("s\\g ");
 		for(String s : labels){
-			out.print(s + " ");
+			out.write(s + " ");
 		}
-		out.println();
+		out.newLine();
+		writeRows(out);
+	}
+	
+	/**
+	 * Writes a row for each sample: its name and its genotype
+	 * (each distinct genotype is encoded once)
+	 * @param out destination
+	 */
+	private void writeRows(MatrixWriter out){
 		for(int i = 0; i<this.genotypes.size(); i++){
+			byte[] row = MatrixWriter.encodeRow(genotypes, i);
+			int[] ids = samples.get(i);
 			for(int j = 0 ; j<this.frequencyOf(i); j++){
-				out.println(samples.get(i).get(j) + " " + Utils.BoolVecToString(this.genotypes.get(i)));
+				out.writeName(sampleNames, ids[j]);
+				out.write(' ');
+				out.write(row);
+				out.newLine();
 			}
 		}
 	}
-
+	
 	/**
 	 * @return number of different genotypes after compacting 
 	 */
@@ -506,12 +1560,81 @@ public class Dataset {
 
 	/**
 	 * @param i position
-	 * @return the samples names of the i-th elements of the dataset  
+	 * @return the samples names of the i-th elements of the dataset (decoded at each call)
 	 */
 	public ArrayList<String> getSamples(int i) {
+		return sampleNames.resolve(samples.get(i));
+	}
+	
+	/**
+	 * @param i position
+	 * @return the ids of the samples of the i-th element of the dataset (not a copy, do not modify)
+	 */
+	public int[] getSampleIds(int i) {
 		return samples.get(i);
 	}
 	
+	/**
+	 * @return the names of the samples (see getSampleIds)
+	 */
+	public SampleDictionary getSampleNames() {
+		return sampleNames;
+	}
+	
+	/**
+	 * Saves this data set in binary format (see BinaryDatasetFile)
+	 * @param path of the output file
+	 * @throws NotAlreadyCompactedException when this is not compacted 
+	 */
+	public void save(String path){
+		if(!compacted){
+			throw new NotAlreadyCompactedException();
+		}
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+			BinaryDatasetFile.write(out, labels, genotypes, frequencies, samples, sampleNames, numberOfEntries, 
+					originalLabels, originalGenes);
+			out.close();
+		} catch (IOException e) {
+			System.err.println("Error in writing output file!");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Loads a compacted data set saved in binary format: the file is memory mapped and
+	 * genotypes, frequencies, samples and their names are read from the mapping when
+	 * requested (they are copied on the heap only if the data set is modified)
+	 * @param path of the input file
+	 * @throws DatasetAlreadyInitializedException if the dataset was already initialized
+	 */
+	public void load(String path) throws DatasetAlreadyInitializedException{
+		if(initialized){
+			throw new DatasetAlreadyInitializedException();
+		}
+		try {
+			BinaryDatasetFile file;
+			try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)){
+				file = new BinaryDatasetFile(channel);
+			} /* mapped sections stay valid after closing the channel */
+			this.labels = file.getLabels();
+			this.genotypes = file.getGenotypes();
+			this.frequencies = file.getFrequencies();
+			this.numberOfEntries = file.getNumberOfEntries();
+			this.samples = file.getSamples();
+			this.sampleNames = file.getSampleNames();
+			this.originalLabels = file.getOriginalLabels();
+			this.originalGenes = file.getOriginalGenes();
+			initialized = true;
+			compacted = true;
+		} catch (NoSuchFileException e) {
+			System.err.println("Error in reading input file!");
+			e.printStackTrace();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
 	
 
 
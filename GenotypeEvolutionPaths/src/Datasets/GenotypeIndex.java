@@ -0,0 +1,128 @@
+package Datasets;
+
+import java.util.Arrays;
+
+/**
+ * Hash index grouping equal genotypes of a PackedGenotypeStore
+ * (open addressing with linear probing, genotypes are compared word by word).
+ * Each distinct genotype is associated with a group number, groups are numbered
+ * in order of first insertion.
+ *
+ * @author rossi
+ *
+ */
+public class GenotypeIndex {
+
+	/**
+	 * store containing the indexed genotypes
+	 */
+	private final PackedGenotypeStore store;
+	/**
+	 * hash table, contains group+1 (0 = empty slot)
+	 */
+	private int[] table;
+	/**
+	 * representative genotype (position in store) of each group
+	 */
+	private int[] groupRows;
+	/**
+	 * cached hash code of each group
+	 */
+	private int[] groupHashes;
+	/**
+	 * number of groups
+	 */
+	private int size = 0;
+
+	/**
+	 * Default constructor
+	 * @param store    genotypes to be indexed
+	 * @param expected expected number of distinct genotypes
+	 */
+	public GenotypeIndex(PackedGenotypeStore store, int expected){
+		this.store = store;
+		int capacity = 16;
+		while(capacity < 2*expected){
+			capacity <<= 1;
+		}
+		this.table = new int[capacity];
+		this.groupRows = new int[Math.max(16, expected)];
+		this.groupHashes = new int[groupRows.length];
+	}
+
+	/**
+	 * Finds the group of the genotype at position 'row' of the store,
+	 * a new group is created if this genotype was never seen before
+	 * @param row position in the store
+	 * @return group number of that genotype
+	 */
+	public int groupOf(int row){
+		int hash = mix(store.hashRow(row));
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		while(table[slot] != 0){
+			int group = table[slot] - 1;
+			if(groupHashes[group] == hash && store.equalRows(groupRows[group], row)){
+				return group;
+			}
+			slot = (slot + 1) & mask;
+		}
+		/* new group */
+		if(size == groupRows.length){
+			groupRows = Arrays.copyOf(groupRows, size*2);
+			groupHashes = Arrays.copyOf(groupHashes, size*2);
+		}
+		groupRows[size] = row;
+		groupHashes[size] = hash;
+		table[slot] = size + 1;
+		size++;
+		if(2*size > table.length){
+			rehash();
+		}
+		return size - 1;
+	}
+
+	/**
+	 * doubles the size of the hash table
+	 */
+	private void rehash(){
+		int[] newTable = new int[table.length*2];
+		int mask = newTable.length - 1;
+		for(int group = 0; group<size; group++){
+			int slot = groupHashes[group] & mask;
+			while(newTable[slot] != 0){
+				slot = (slot + 1) & mask;
+			}
+			newTable[slot] = group + 1;
+		}
+		table = newTable;
+	}
+
+	/**
+	 * spreads the bits of a hash code
+	 * @param h
+	 * @return mixed hash code
+	 */
+	private static int mix(int h){
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	/**
+	 * @param group
+	 * @return position in the store of the first genotype of group 'group'
+	 */
+	public int getRow(int group){
+		return groupRows[group];
+	}
+
+	/**
+	 * @return number of distinct genotypes indexed
+	 */
+	public int size(){
+		return size;
+	}
+
+}
@@ -0,0 +1,329 @@
+package Datasets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Hand written tokenizer for mutational matrices (BML and CAPRI formats)
+ * working directly on the bytes of a buffered stream or of a memory mapped file:
+ * 0/1 cells are decoded without creating any String, names are decoded once.
+ * Tokens are separated by white spaces, lines by '\n'.
+ * Files are mapped in successive windows, so files larger than 2GB can be read.
+ *
+ * @author rossi
+ *
+ */
+public class MatrixTokenizer implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	/**
+	 * size of the mapped windows (256MB, also used by the parallel reader of Dataset)
+	 */
+	static final int WINDOW_SIZE = 1 << 28;
+
+	/**
+	 * source stream (null when reading a mapped file)
+	 */
+	private final InputStream in;
+	private byte[] buffer;
+	/**
+	 * source file (null when reading a stream)
+	 */
+	private final FileChannel channel;
+	/**
+	 * true if close() closes channel (false for regions of a shared file)
+	 */
+	private final boolean ownsChannel;
+	/**
+	 * first byte of the file not yet mapped
+	 */
+	private long mapped = 0;
+	/**
+	 * first byte of the file that must not be read
+	 */
+	private final long end;
+	private final int windowSize;
+	/**
+	 * bytes being read (the buffer or the current mapped window)
+	 */
+	private ByteBuffer window;
+	/**
+	 * position of the next byte to be read in window
+	 */
+	private int position = 0;
+	/**
+	 * number of valid bytes in window
+	 */
+	private int limit = 0;
+	/**
+	 * temporary space to decode names
+	 */
+	private byte[] scratch = new byte[64];
+
+	/**
+	 * Default constructor
+	 * @param in stream to be tokenized
+	 */
+	public MatrixTokenizer(InputStream in){
+		this.in = in;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.channel = null;
+		this.ownsChannel = false;
+		this.end = 0;
+		this.windowSize = 0;
+	}
+
+	/**
+	 * Constructor for memory mapped files
+	 * @param channel file to be tokenized
+	 */
+	public MatrixTokenizer(FileChannel channel){
+		this(channel, WINDOW_SIZE);
+	}
+
+	/**
+	 * Constructor for memory mapped files with a custom window size
+	 * @param channel    file to be tokenized
+	 * @param windowSize maximum number of bytes mapped at once
+	 */
+	MatrixTokenizer(FileChannel channel, int windowSize){
+		this(channel, 0, size(channel), windowSize, true);
+	}
+
+	/**
+	 * Constructor for a region of a memory mapped file
+	 * (the channel is not closed by close())
+	 * @param channel    file to be tokenized
+	 * @param from       first byte of the region
+	 * @param to         end of the region (excluded)
+	 * @param windowSize maximum number of bytes mapped at once
+	 */
+	MatrixTokenizer(FileChannel channel, long from, long to, int windowSize){
+		this(channel, from, to, windowSize, false);
+	}
+
+	private MatrixTokenizer(FileChannel channel, long from, long to, int windowSize, boolean ownsChannel){
+		this.in = null;
+		this.channel = channel;
+		this.ownsChannel = ownsChannel;
+		this.mapped = from;
+		this.end = to;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param channel
+	 * @return size of the file
+	 */
+	private static long size(FileChannel channel){
+		try {
+			return channel.size();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Loads the next part of the input in window
+	 * @return false if the input is finished
+	 */
+	private boolean refill(){
+		try {
+			if(in != null){
+				int read = in.read(buffer, 0, buffer.length);
+				if(read <= 0){
+					return false;
+				}
+				window = ByteBuffer.wrap(buffer, 0, read);
+				limit = read;
+			}else{
+				long remaining = end - mapped;
+				if(remaining <= 0){
+					return false;
+				}
+				limit = (int) Math.min(remaining, windowSize);
+				window = channel.map(FileChannel.MapMode.READ_ONLY, mapped, limit);
+				mapped += limit;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		position = 0;
+		return true;
+	}
+
+	/**
+	 * @return the next byte without consuming it, in [0, 255] (-1 at the end of the stream)
+	 */
+	private int peek(){
+		if(position == limit && !refill()){
+			return -1;
+		}
+		return window.get(position) & 0xFF;
+	}
+
+	/**
+	 * @return position in the file of the next byte to be read (only for mapped files)
+	 */
+	long getOffset(){
+		return mapped - limit + position;
+	}
+
+	/**
+	 * @param b
+	 * @return true if b is a white space (new lines included)
+	 */
+	static boolean isWhitespace(int b){
+		return b == ' ' || b == '\n' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+	}
+
+	/**
+	 * skips white spaces (new lines included)
+	 */
+	private void skipWhitespaces(){
+		int b;
+		while((b = peek()) != -1 && isWhitespace(b)){
+			position++;
+		}
+	}
+
+	/**
+	 * @return true if there is another token in the stream
+	 */
+	public boolean hasNext(){
+		skipWhitespaces();
+		return peek() != -1;
+	}
+
+	/**
+	 * @return true if there is another token before the end of the current line
+	 */
+	public boolean hasNextOnLine(){
+		int b;
+		while((b = peek()) != -1 && b != '\n' && isWhitespace(b)){
+			position++;
+		}
+		return b != -1 && b != '\n';
+	}
+
+	/**
+	 * Consumes the rest of the current line (new line included)
+	 */
+	public void skipLine(){
+		int b;
+		while((b = peek()) != -1){
+			position++;
+			if(b == '\n'){
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Copies the next token in scratch
+	 * @return length of the token
+	 * @throws java.util.NoSuchElementException if the stream is finished
+	 */
+	private int readToken(){
+		skipWhitespaces();
+		int length = 0;
+		int b;
+		while((b = peek()) != -1 && !isWhitespace(b)){
+			if(length == scratch.length){
+				scratch = Arrays.copyOf(scratch, length*2);
+			}
+			scratch[length++] = (byte) b;
+			position++;
+		}
+		if(length == 0){
+			throw new java.util.NoSuchElementException();
+		}
+		return length;
+	}
+
+	/**
+	 * @return the next token as a String
+	 * @throws java.util.NoSuchElementException if the stream is finished
+	 */
+	public String next(){
+		return new String(scratch, 0, readToken(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Consumes the next token
+	 * @throws java.util.NoSuchElementException if the stream is finished
+	 */
+	public void skipToken(){
+		readToken();
+	}
+
+	/**
+	 * Adds the next token to a dictionary without creating a String
+	 * @param names destination
+	 * @return the id of the token in names
+	 * @throws java.util.NoSuchElementException if the stream is finished
+	 */
+	public int nextName(SampleDictionary names){
+		return names.add(scratch, 0, readToken());
+	}
+
+	/**
+	 * @return the next token as an integer
+	 * @throws NumberFormatException if the token is not an integer
+	 */
+	public int nextInt(){
+		skipWhitespaces();
+		int b = peek();
+		if(b == -1){
+			throw new java.util.NoSuchElementException();
+		}
+		boolean negative = false;
+		if(b == '-' || b == '+'){
+			negative = b == '-';
+			position++;
+			b = peek();
+		}
+		int value = 0;
+		int digits = 0;
+		while(b != -1 && !isWhitespace(b)){
+			if(b < '0' || b > '9'){
+				throw new NumberFormatException("Invalid character in number: " + (char) b);
+			}
+			value = value*10 + (b - '0');
+			digits++;
+			position++;
+			b = peek();
+		}
+		if(digits == 0){
+			throw new NumberFormatException("Missing digits");
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @return true if the next token is the integer 1 (a mutated gene)
+	 */
+	public boolean nextCell(){
+		return nextInt() == 1;
+	}
+
+	@Override
+	public void close(){
+		try {
+			if(in != null){
+				in.close();
+			}else if(ownsChannel){
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
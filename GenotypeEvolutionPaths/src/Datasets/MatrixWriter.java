@@ -0,0 +1,209 @@
+package Datasets;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writer for mutational matrices (BML and CAPRI/TRONCO formats), counterpart of MatrixTokenizer:
+ * rows are encoded directly as bytes in a reusable buffer that is written
+ * to a stream or to a file channel in large blocks.
+ *
+ * @author rossi
+ *
+ */
+public class MatrixWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final byte[] NEW_LINE = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * destination stream (null when writing on a channel)
+	 */
+	private final OutputStream out;
+	/**
+	 * destination file (null when writing on a stream)
+	 */
+	private final FileChannel channel;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	/**
+	 * number of bytes in buffer
+	 */
+	private int position = 0;
+
+	/**
+	 * Constructor for streams (the stream is closed by close())
+	 * @param out destination
+	 */
+	public MatrixWriter(OutputStream out){
+		this.out = out;
+		this.channel = null;
+	}
+
+	/**
+	 * Constructor for file channels (the channel is closed by close())
+	 * @param channel destination
+	 */
+	public MatrixWriter(FileChannel channel){
+		this.out = null;
+		this.channel = channel;
+	}
+
+	/**
+	 * Opens a file for writing
+	 * @param path destination file (overwritten)
+	 * @param gzip true to compress the output with GZIP
+	 * @return the writer
+	 * @throws IOException
+	 */
+	public static MatrixWriter open(String path, boolean gzip) throws IOException {
+		if(gzip){
+			return new MatrixWriter(new GZIPOutputStream(new FileOutputStream(path), BUFFER_SIZE));
+		}
+		return new MatrixWriter(FileChannel.open(Paths.get(path), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+
+	/**
+	 * Writes bytes
+	 * @param bytes  source
+	 * @param from   first byte
+	 * @param length number of bytes
+	 */
+	public void write(byte[] bytes, int from, int length){
+		if(position + length > buffer.length){
+			drain();
+			if(length > buffer.length){
+				writeOut(bytes, from, length);
+				return;
+			}
+		}
+		System.arraycopy(bytes, from, buffer, position, length);
+		position += length;
+	}
+
+	/**
+	 * Writes bytes
+	 * @param bytes
+	 */
+	public void write(byte[] bytes){
+		write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Writes a String (UTF-8)
+	 * @param s
+	 */
+	public void write(String s){
+		write(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes a sample name
+	 * @param names dictionary of the names
+	 * @param id    id of the name
+	 */
+	public void writeName(SampleDictionary names, int id){
+		write(names.getBlob(), names.encodedOffset(id), names.encodedLength(id));
+	}
+
+	/**
+	 * Writes a single byte
+	 * @param b
+	 */
+	public void write(char b){
+		if(position == buffer.length){
+			drain();
+		}
+		buffer[position++] = (byte) b;
+	}
+
+	/**
+	 * Writes the line separator of the system (as PrintStream.println())
+	 */
+	public void newLine(){
+		write(NEW_LINE);
+	}
+
+	/**
+	 * Encodes a genotype as in Utils.BoolVecToString ("1 0 1 ... ")
+	 * @param genotypes
+	 * @param row
+	 * @return the encoded genotype
+	 */
+	public static byte[] encodeRow(PackedGenotypeStore genotypes, int row){
+		byte[] ret = new byte[2*genotypes.getNumberOfGenes()];
+		for(int j = 0; j<ret.length; j+=2){
+			ret[j] = '0';
+			ret[j+1] = ' ';
+		}
+		for(int w = 0; w<genotypes.getWordsPerRow(); w++){
+			long word = genotypes.getWord(row, w);
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				ret[2*((w << 6) + bit)] = '1';
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * writes the buffer to the destination
+	 */
+	private void drain(){
+		writeOut(buffer, 0, position);
+		position = 0;
+	}
+
+	private void writeOut(byte[] bytes, int from, int length){
+		try {
+			if(out != null){
+				out.write(bytes, from, length);
+			}else{
+				ByteBuffer block = ByteBuffer.wrap(bytes, from, length);
+				while(block.hasRemaining()){
+					channel.write(block);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes all the buffered bytes (the destination is not closed)
+	 */
+	public void flush(){
+		drain();
+		try {
+			if(out != null){
+				out.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void close(){
+		flush();
+		try {
+			if(out != null){
+				out.close();
+			}else{
+				channel.close();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+}
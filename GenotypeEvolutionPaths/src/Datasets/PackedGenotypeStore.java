@@ -0,0 +1,421 @@
+package Datasets;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+import Utils.Utils;
+
+/**
+ * Class to store genotypes packed as bits in long words
+ * All the rows are kept in a single long[], each row uses getWordsPerRow() words.
+ * Gene j is the (63 - j%64)-th bit of the (j/64)-th word of a row so that
+ * comparing the words of two rows as unsigned values gives the same order of
+ * Utils.genotypeBinaryValueCompare (padding bits are always 0).
+ *
+ * @author rossi
+ *
+ */
+public class PackedGenotypeStore {
+
+	/**
+	 * number of genes of every genotype
+	 */
+	private final int numberOfGenes;
+	/**
+	 * number of long words used by a single genotype
+	 */
+	private final int wordsPerRow;
+	/**
+	 * packed genotypes (row major)
+	 */
+	private long[] words;
+	/**
+	 * packed genotypes mapped from a file (see wrap), null if they are in words:
+	 * a mapped store is read from the mapping until its first modification
+	 */
+	private LongBuffer mapped = null;
+	/**
+	 * number of genotypes in this store
+	 */
+	private int size = 0;
+
+	/**
+	 * Default constructor
+	 * @param numberOfGenes length of the genotypes to be stored
+	 */
+	public PackedGenotypeStore(int numberOfGenes){
+		this(numberOfGenes, 16);
+	}
+
+	/**
+	 * Constructor with pre-sizing
+	 * @param numberOfGenes length of the genotypes to be stored
+	 * @param expectedRows  number of genotypes for which space is reserved
+	 */
+	public PackedGenotypeStore(int numberOfGenes, int expectedRows){
+		this.numberOfGenes = numberOfGenes;
+		this.wordsPerRow = Utils.wordsFor(numberOfGenes);
+		this.words = new long[Math.max(1, expectedRows) * Math.max(1, wordsPerRow)];
+	}
+
+	/**
+	 * Creates a store reading its content from 'mapped' (not copied,
+	 * genotypes are copied on the heap only if the store is modified)
+	 * @param numberOfGenes length of the genotypes
+	 * @param mapped        packed genotypes (row major)
+	 * @param size          number of genotypes in mapped
+	 * @return the new store
+	 */
+	static PackedGenotypeStore wrap(int numberOfGenes, LongBuffer mapped, int size){
+		PackedGenotypeStore ret = new PackedGenotypeStore(numberOfGenes, 0);
+		assert(mapped.capacity() >= size*ret.wordsPerRow);
+		ret.mapped = mapped;
+		ret.size = size;
+		return ret;
+	}
+
+	/**
+	 * @param index position in words
+	 * @return the word at that position (from the mapping if the store is mapped)
+	 */
+	private long word(int index){
+		return mapped == null ? words[index] : mapped.get(index);
+	}
+
+	/**
+	 * Copies 'length' words of this store starting from position 'from'
+	 */
+	private void copyWords(int from, long[] dst, int dstFrom, int length){
+		if(mapped == null){
+			System.arraycopy(words, from, dst, dstFrom, length);
+		}else{
+			LongBuffer src = mapped.duplicate();
+			src.position(from);
+			src.get(dst, dstFrom, length);
+		}
+	}
+
+	/**
+	 * Copies the mapped genotypes on the heap (before the first modification)
+	 */
+	private void materialize(){
+		if(mapped == null) return;
+		long[] copy = new long[Math.max(1, size*wordsPerRow)];
+		copyWords(0, copy, 0, size*wordsPerRow);
+		words = copy;
+		mapped = null;
+	}
+
+	/**
+	 * grants space for at least 'rows' genotypes
+	 * @param rows
+	 */
+	private void ensureCapacity(int rows){
+		materialize();
+		long needed = (long) rows * wordsPerRow;
+		if(needed > words.length){
+			long newLength = Math.max(needed, (long) words.length + (words.length >> 1));
+			assert(newLength <= Integer.MAX_VALUE - 8): "too many genotypes for a single store";
+			words = Arrays.copyOf(words, (int) Math.min(newLength, Integer.MAX_VALUE - 8));
+		}
+	}
+
+	/**
+	 * Adds a genotype filled with zeros (no mutations)
+	 * @return the position of the new genotype
+	 */
+	public int addEmpty(){
+		ensureCapacity(size+1);
+		return size++;
+	}
+
+	/**
+	 * Adds a genotype
+	 * @param genotype REQUIRE |genotype| = getNumberOfGenes()
+	 * @return the position of the new genotype
+	 */
+	public int add(boolean[] genotype){
+		assert(genotype.length == numberOfGenes): "Incompatible genotype";
+		int row = addEmpty();
+		for(int j = 0; j<genotype.length; j++){
+			if(genotype[j]){
+				setBit(row, j);
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Adds a genotype already in packed form
+	 * @param packed REQUIRE |packed| = getWordsPerRow()
+	 * @return the position of the new genotype
+	 */
+	public int add(long[] packed){
+		assert(packed.length == wordsPerRow): "Incompatible genotype";
+		int row = addEmpty();
+		System.arraycopy(packed, 0, words, row*wordsPerRow, wordsPerRow);
+		return row;
+	}
+
+	/**
+	 * Inserts a genotype shifting the following ones
+	 * @param row    position of the new genotype (REQUIRE 0 <= row <= size())
+	 * @param packed REQUIRE |packed| = getWordsPerRow()
+	 */
+	public void insert(int row, long[] packed){
+		assert(packed.length == wordsPerRow): "Incompatible genotype";
+		ensureCapacity(size+1);
+		System.arraycopy(words, row*wordsPerRow, words, (row+1)*wordsPerRow, (size-row)*wordsPerRow);
+		System.arraycopy(packed, 0, words, row*wordsPerRow, wordsPerRow);
+		size++;
+	}
+
+	/**
+	 * Copies the genotype at position 'row' of other in this store
+	 * @param other REQUIRE same number of genes
+	 * @param row   position in other
+	 * @return the position of the new genotype
+	 */
+	public int add(PackedGenotypeStore other, int row){
+		assert(other.numberOfGenes == numberOfGenes): "Incompatible genotype";
+		int newRow = addEmpty();
+		other.copyWords(row*wordsPerRow, words, newRow*wordsPerRow, wordsPerRow);
+		return newRow;
+	}
+
+	/**
+	 * Appends all the genotypes of other to this store
+	 * @param other REQUIRE same number of genes
+	 */
+	public void addAll(PackedGenotypeStore other){
+		assert(other.numberOfGenes == numberOfGenes): "Incompatible genotype";
+		ensureCapacity(size + other.size);
+		other.copyWords(0, words, size*wordsPerRow, other.size*wordsPerRow);
+		size += other.size;
+	}
+
+	/**
+	 * Sets gene 'gene' of genotype 'row' as mutated
+	 * @param row
+	 * @param gene
+	 */
+	public void setBit(int row, int gene){
+		materialize();
+		words[row*wordsPerRow + (gene >>> 6)] |= Long.MIN_VALUE >>> (gene & 63);
+	}
+
+	/**
+	 * @param row
+	 * @param gene
+	 * @return true if gene 'gene' of genotype 'row' is mutated
+	 */
+	public boolean getBit(int row, int gene){
+		return (word(row*wordsPerRow + (gene >>> 6)) & (Long.MIN_VALUE >>> (gene & 63))) != 0;
+	}
+
+	/**
+	 * @param row
+	 * @param w
+	 * @return the w-th word of genotype 'row'
+	 */
+	public long getWord(int row, int w){
+		return word(row*wordsPerRow + w);
+	}
+
+	/**
+	 * @param row
+	 * @return a copy of genotype 'row' in packed form
+	 */
+	public long[] getPacked(int row){
+		long[] ret = new long[wordsPerRow];
+		copyWords(row*wordsPerRow, ret, 0, wordsPerRow);
+		return ret;
+	}
+
+	/**
+	 * Compatibility view for code working on boolean arrays
+	 * @param row
+	 * @return a copy of genotype 'row' as an array of booleans
+	 */
+	public boolean[] get(int row){
+		boolean[] ret = new boolean[numberOfGenes];
+		int base = row*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			long word = word(base+w);
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				ret[(w << 6) + bit] = true;
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @param row
+	 * @return number of mutated genes in genotype 'row'
+	 */
+	public int mutationCount(int row){
+		int count = 0;
+		int base = row*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			count += Long.bitCount(word(base+w));
+		}
+		return count;
+	}
+
+	/**
+	 * Comparator for genotypes a and b seen as binary values
+	 * (same semantic of Utils.genotypeBinaryValueCompare)
+	 * @param a
+	 * @param b
+	 * @return a>b = 1, a=b = 0, a<b = -1
+	 */
+	public int compare(int a, int b){
+		int baseA = a*wordsPerRow;
+		int baseB = b*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			int cmp = Long.compareUnsigned(word(baseA+w), word(baseB+w));
+			if(cmp != 0){
+				return cmp > 0 ? 1 : -1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Comparator between genotype 'row' and a packed genotype
+	 * (same semantic of Utils.genotypeBinaryValueCompare)
+	 * @param row
+	 * @param packed REQUIRE |packed| = getWordsPerRow()
+	 * @return row>packed = 1, row=packed = 0, row<packed = -1
+	 */
+	public int compare(int row, long[] packed){
+		int base = row*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			int cmp = Long.compareUnsigned(word(base+w), packed[w]);
+			if(cmp != 0){
+				return cmp > 0 ? 1 : -1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return true if genotypes a and b are equal
+	 */
+	public boolean equalRows(int a, int b){
+		int baseA = a*wordsPerRow;
+		int baseB = b*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			if(word(baseA+w) != word(baseB+w)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param row
+	 * @return hash code of genotype 'row' (equal genotypes have equal hash codes)
+	 */
+	public int hashRow(int row){
+		long h = 1;
+		int base = row*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			h = 31*h + word(base+w);
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * @param a genotype position
+	 * @param b genotype position
+	 * @return a \subseteq b
+	 */
+	public boolean isSubseteq(int a, int b){
+		int baseA = a*wordsPerRow;
+		int baseB = b*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			if((word(baseA+w) & ~word(baseB+w)) != 0){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param a genotype position
+	 * @param b genotype position
+	 * @return the hamming distance between genotypes a and b
+	 */
+	public int hammingDistance(int a, int b){
+		int count = 0;
+		int baseA = a*wordsPerRow;
+		int baseB = b*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			count += Long.bitCount(word(baseA+w) ^ word(baseB+w));
+		}
+		return count;
+	}
+
+	/**
+	 * Adds 'times' to the counter of each gene mutated in genotype 'row'
+	 * @param row
+	 * @param counts REQUIRE |counts| = getNumberOfGenes()
+	 * @param times  weight of this genotype
+	 */
+	public void addColumnCounts(int row, int[] counts, int times){
+		int base = row*wordsPerRow;
+		for(int w = 0; w<wordsPerRow; w++){
+			long word = word(base+w);
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				counts[(w << 6) + bit] += times;
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+	}
+
+	/**
+	 * Creates a new store keeping only some of the genes of each genotype
+	 * @param columns genes to be kept (in the order of the new genotypes)
+	 * @return the projected store
+	 */
+	public PackedGenotypeStore project(int[] columns){
+		PackedGenotypeStore ret = new PackedGenotypeStore(columns.length, size);
+		for(int i = 0; i<size; i++){
+			int row = ret.addEmpty();
+			for(int j = 0; j<columns.length; j++){
+				if(getBit(i, columns[j])){
+					ret.setBit(row, j);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the number of genotypes in this store
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * @return the number of genes of the genotypes in this store
+	 */
+	public int getNumberOfGenes(){
+		return numberOfGenes;
+	}
+
+	/**
+	 * @return the number of long words used by a single genotype
+	 */
+	public int getWordsPerRow(){
+		return wordsPerRow;
+	}
+
+}
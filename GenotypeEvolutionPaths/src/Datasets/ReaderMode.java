@@ -0,0 +1,41 @@
+package Datasets;
+
+/**
+ * Strategies available to read a data set
+ *
+ * @author rossi
+ *
+ */
+public enum ReaderMode {
+	/**
+	 * java.util.Scanner based reader (original implementation)
+	 */
+	SCANNER,
+	/**
+	 * byte level tokenizer over a buffered stream (see MatrixTokenizer)
+	 */
+	STREAM,
+	/**
+	 * byte level tokenizer over a memory mapped file (see MatrixTokenizer),
+	 * STDIN is read as in STREAM mode
+	 */
+	MAPPED,
+	/**
+	 * CAPRI files are split in chunks of rows parsed in parallel
+	 * on memory mapped regions, BML files and STDIN are read as in MAPPED mode
+	 */
+	PARALLEL;
+
+	/**
+	 * @param name of the mode (case insensitive)
+	 * @return the mode with that name or null if it does not exist
+	 */
+	public static ReaderMode fromName(String name){
+		for(ReaderMode mode : values()){
+			if(mode.name().equalsIgnoreCase(name)){
+				return mode;
+			}
+		}
+		return null;
+	}
+}
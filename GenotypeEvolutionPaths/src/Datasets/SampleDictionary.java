@@ -0,0 +1,178 @@
+package Datasets;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Names of the samples of a data set, UTF-8 encoded one after the other in a single byte array,
+ * each name is identified by an integer id (ids are assigned in order of insertion).
+ * Names are not deduplicated: adding a name twice stores it twice, with two ids.
+ * Names are decoded as Strings only when requested.
+ *
+ * @author rossi
+ *
+ */
+public class SampleDictionary {
+
+	/**
+	 * encoded names (one after the other)
+	 */
+	private byte[] blob;
+	/**
+	 * the name with id i is in blob[offsets[i], offsets[i+1])
+	 */
+	private int[] offsets;
+	/**
+	 * number of names
+	 */
+	private int size = 0;
+	/**
+	 * encoded names and offsets read from a mapping until the first modification
+	 * (null if the content is in blob and offsets)
+	 */
+	private ByteBuffer mappedBlob = null;
+	private IntBuffer mappedOffsets = null;
+
+	/**
+	 * Default constructor
+	 */
+	public SampleDictionary(){
+		this.blob = new byte[1024];
+		this.offsets = new int[129];
+	}
+
+	/**
+	 * Creates a dictionary reading its content from the given buffers (not copied)
+	 * @param blob    encoded names
+	 * @param offsets size+1 offsets of the names in blob
+	 * @param size    number of names
+	 * @return the new dictionary
+	 */
+	static SampleDictionary wrap(ByteBuffer blob, IntBuffer offsets, int size){
+		SampleDictionary ret = new SampleDictionary();
+		ret.mappedBlob = blob;
+		ret.mappedOffsets = offsets;
+		ret.size = size;
+		return ret;
+	}
+
+	/**
+	 * Adds a name
+	 * @param name
+	 * @return the id of the name
+	 */
+	public int add(String name){
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		return add(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Adds an already encoded name
+	 * @param bytes  source array
+	 * @param from   first byte of the name
+	 * @param length number of bytes of the name
+	 * @return the id of the name
+	 */
+	int add(byte[] bytes, int from, int length){
+		materialize();
+		int end = offsets[size];
+		if(end + length > blob.length){
+			blob = Arrays.copyOf(blob, Math.max(end + length, blob.length + (blob.length >> 1)));
+		}
+		if(size + 2 > offsets.length){
+			offsets = Arrays.copyOf(offsets, Math.max(size + 2, offsets.length + (offsets.length >> 1)));
+		}
+		System.arraycopy(bytes, from, blob, end, length);
+		offsets[size+1] = end + length;
+		return size++;
+	}
+
+	/**
+	 * @return a copy of this dictionary (on the heap), with the same ids
+	 */
+	SampleDictionary copy(){
+		materialize();
+		SampleDictionary ret = new SampleDictionary();
+		ret.blob = Arrays.copyOf(blob, blob.length);
+		ret.offsets = Arrays.copyOf(offsets, offsets.length);
+		ret.size = size;
+		return ret;
+	}
+
+	/**
+	 * @param id
+	 * @return the name with that id
+	 */
+	public String get(int id){
+		if(mappedBlob != null){
+			byte[] bytes = new byte[encodedLength(id)];
+			((ByteBuffer) mappedBlob.duplicate().position(encodedOffset(id))).get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		return new String(blob, offsets[id], offsets[id+1] - offsets[id], StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param ids
+	 * @return the names with those ids (in the same order)
+	 */
+	public ArrayList<String> resolve(int[] ids){
+		ArrayList<String> ret = new ArrayList<String>(ids.length);
+		for(int id : ids){
+			ret.add(get(id));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param id
+	 * @return length in bytes of the encoded name
+	 */
+	int encodedLength(int id){
+		return offset(id+1) - offset(id);
+	}
+
+	/**
+	 * @param id
+	 * @return offset of the encoded name in getBlob()
+	 */
+	int encodedOffset(int id){
+		return offset(id);
+	}
+
+	/**
+	 * @return the encoded names (not a copy, a mapped dictionary is copied on the heap first)
+	 */
+	byte[] getBlob(){
+		materialize();
+		return blob;
+	}
+
+	private int offset(int i){
+		return mappedOffsets != null ? mappedOffsets.get(i) : offsets[i];
+	}
+
+	/**
+	 * Copies the mapped content (if any) on the heap
+	 */
+	private void materialize(){
+		if(mappedBlob == null) return;
+		offsets = new int[size+1];
+		mappedOffsets.duplicate().get(offsets, 0, size+1);
+		blob = new byte[offsets[size]];
+		mappedBlob.duplicate().get(blob);
+		mappedBlob = null;
+		mappedOffsets = null;
+	}
+
+	/**
+	 * @return number of names
+	 */
+	public int size(){
+		return size;
+	}
+
+}
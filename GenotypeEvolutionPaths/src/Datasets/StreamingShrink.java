@@ -0,0 +1,230 @@
+package Datasets;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Two pass reader of BML and CAPRI files that keeps in memory only the most mutated genes
+ * (same result of reading, compacting and then shrinking the data set).
+ * The first pass only counts, for each gene, the distinct genotypes in which it is mutated
+ * (distinct genotypes are recognised by a 128 bit fingerprint, so whole rows are never stored),
+ * the second pass materialises only the selected columns.
+ * Limits:
+ * - fingerprints are not exact keys: two distinct genotypes with the same fingerprint
+ *   (very unlikely, but not detected) are counted once, so the counts of their genes, and
+ *   then the selected genes, can differ from shrink()
+ * - memory is not O(genes): the first pass keeps 16 bytes for each distinct row and the
+ *   second pass keeps the selected columns of every sample
+ *
+ * @author rossi
+ *
+ */
+class StreamingShrink {
+
+	private final String path;
+	private final boolean capri;
+	/**
+	 * all the genes of the input file
+	 */
+	private final ArrayList<String> labels = new ArrayList<String>();
+	/**
+	 * number of rows not yet read in the current pass (only for BML files)
+	 */
+	private int remaining;
+	/**
+	 * dictionary in which sample names are read (null: names are skipped)
+	 */
+	private SampleDictionary names = null;
+	/**
+	 * id of the name of the last read sample
+	 */
+	private int sample;
+	/**
+	 * positions of the mutated genes of the last read row
+	 */
+	private int[] mutated = new int[0];
+
+	/**
+	 * @param path  input file (it is read twice)
+	 * @param capri true for CAPRI format, false for BML format
+	 */
+	StreamingShrink(String path, boolean capri){
+		this.path = path;
+		this.capri = capri;
+	}
+
+	/**
+	 * Reads the header of the file (labels and, for BML files, number of samples)
+	 * @param in
+	 */
+	private void readHeader(MatrixTokenizer in){
+		labels.clear();
+		if(capri){
+			in.next(); // first element is not important
+			while(in.hasNextOnLine()){
+				labels.add(in.next());
+			}
+			in.skipLine();
+		}else{
+			remaining = in.nextInt();
+			int nGenes = in.nextInt();
+			for(int i = 0; i<nGenes; i++){
+				labels.add(in.next());
+			}
+		}
+		mutated = new int[labels.size()];
+	}
+
+	/**
+	 * Reads the next row in sample and mutated
+	 * @param in
+	 * @return number of mutated genes in the row, -1 if the file is finished
+	 */
+	private int nextRow(MatrixTokenizer in){
+		if(capri ? !in.hasNext() : remaining-- == 0){
+			return -1;
+		}
+		if(names == null){
+			in.skipToken();
+		}else{
+			sample = in.nextName(names);
+		}
+		int count = 0;
+		for(int j = 0; j<labels.size(); j++){
+			if(in.nextCell()){
+				mutated[count++] = j;
+			}
+		}
+		if(capri){
+			in.skipLine();
+		}
+		return count;
+	}
+
+	/**
+	 * First pass
+	 * @return for each gene the number of distinct genotypes in which it is mutated
+	 * @throws IOException
+	 */
+	int[] countMutations() throws IOException {
+		try(MatrixTokenizer in = new MatrixTokenizer(new FileInputStream(path))){
+			readHeader(in);
+			int[] counts = new int[labels.size()];
+			FingerprintSet seen = new FingerprintSet();
+			int count;
+			while((count = nextRow(in)) != -1){
+				long h1 = 1;
+				long h2 = count;
+				for(int k = 0; k<count; k++){
+					h1 = 31*h1 + mix(mutated[k]);
+					h2 = Long.rotateLeft(h2 ^ mix(~mutated[k]), 23) * 0x9E3779B97F4A7C15L;
+				}
+				if(seen.add(h1, h2)){
+					for(int k = 0; k<count; k++){
+						counts[mutated[k]]++;
+					}
+				}
+			}
+			return counts;
+		}
+	}
+
+	/**
+	 * Second pass
+	 * @param selectedGenes positions of the genes to be kept
+	 * @param genotypes     destination of the projected rows (REQUIRE |selectedGenes| genes)
+	 * @param samples       destination of the ids of the samples
+	 * @param sampleNames   destination of the sample names
+	 * @throws IOException
+	 */
+	void readSelected(int[] selectedGenes, PackedGenotypeStore genotypes, List<int[]> samples, SampleDictionary sampleNames) throws IOException {
+		names = sampleNames;
+		try(MatrixTokenizer in = new MatrixTokenizer(new FileInputStream(path))){
+			readHeader(in);
+			int[] newPosition = new int[labels.size()];
+			java.util.Arrays.fill(newPosition, -1);
+			for(int i = 0; i<selectedGenes.length; i++){
+				newPosition[selectedGenes[i]] = i;
+			}
+			int count;
+			while((count = nextRow(in)) != -1){
+				samples.add(new int[]{sample});
+				int row = genotypes.addEmpty();
+				for(int k = 0; k<count; k++){
+					if(newPosition[mutated[k]] != -1){
+						genotypes.setBit(row, newPosition[mutated[k]]);
+					}
+				}
+			}
+		}
+		names = null;
+	}
+
+	/**
+	 * @return all the genes of the input file (after a pass)
+	 */
+	ArrayList<String> getLabels(){
+		return labels;
+	}
+
+	/**
+	 * splitmix64 finalizer
+	 */
+	private static long mix(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Open addressing set of 128 bit fingerprints
+	 */
+	private static class FingerprintSet {
+
+		/**
+		 * pairs of longs, (0, 0) marks an empty slot
+		 */
+		private long[] table = new long[2*1024];
+		private int size = 0;
+
+		/**
+		 * @return true if the fingerprint was not in the set
+		 */
+		boolean add(long h1, long h2){
+			if(h1 == 0 && h2 == 0){
+				h2 = 1;
+			}
+			if(2*(size+1) > table.length/2){
+				long[] old = table;
+				table = new long[old.length*2];
+				for(int i = 0; i<old.length; i+=2){
+					if(old[i] != 0 || old[i+1] != 0){
+						insert(old[i], old[i+1]);
+					}
+				}
+			}
+			if(insert(h1, h2)){
+				size++;
+				return true;
+			}
+			return false;
+		}
+
+		private boolean insert(long h1, long h2){
+			int mask = table.length/2 - 1;
+			int slot = (int) mix(h1 ^ h2) & mask;
+			while(table[2*slot] != 0 || table[2*slot+1] != 0){
+				if(table[2*slot] == h1 && table[2*slot+1] == h2){
+					return false;
+				}
+				slot = (slot+1) & mask;
+			}
+			table[2*slot] = h1;
+			table[2*slot+1] = h2;
+			return true;
+		}
+	}
+
+}
@@ -2,8 +2,18 @@ package Datasets;
 
 
 
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
 import org.junit.Test;
 
+import Utils.Utils;
+
 public class TestDataset {
 
 //	@Test
@@ -24,4 +34,470 @@ public class TestDataset {
 		System.out.println(D.toString());
 	}
 	
+	@Test
+	public void testParallelCompact() {
+		String[] labels = {"A", "B", "C", "D"};
+		boolean[][] data = new boolean[5000][];
+		for(int i = 0; i<data.length; i++){
+			data[i] = Utils.binaryToBoolArray(i%11, labels.length);
+		}
+		Dataset sequential = new Dataset();
+		sequential.read(labels, data);
+		sequential.compact(1);
+		Dataset parallel = new Dataset();
+		parallel.read(labels, data);
+		parallel.compact(8);
+		
+		assertEquals(sequential.getNumberOfDifferentGenotypes(), parallel.getNumberOfDifferentGenotypes());
+		for(int i = 0; i<sequential.getNumberOfDifferentGenotypes(); i++){
+			assertArrayEquals(sequential.get(i), parallel.get(i));
+			assertEquals(sequential.frequencyOf(i), parallel.frequencyOf(i));
+			assertEquals(sequential.getSamples(i), parallel.getSamples(i));
+			if(i>0){
+				assertTrue(Utils.sumBool(sequential.get(i-1)) <= Utils.sumBool(sequential.get(i)));
+			}
+		}
+	}
+	
+	/**
+	 * writes a small CAPRI file to be used by the reader tests
+	 */
+	static File writeCAPRIFile() throws IOException {
+		File f = File.createTempFile("dataset", ".capri");
+		f.deleteOnExit();
+		PrintStream out = new PrintStream(f);
+		out.println("s\\g A B C");
+		out.println("s1 1 0 0");
+		out.println("s2 1 1 0\r");
+		out.println("s3 0 0 0");
+		out.println("s4 1 0 0");
+		out.println("s5 0 1 1");
+		out.close();
+		return f;
+	}
+	
+	/**
+	 * asserts that a and b contain the same compacted data
+	 */
+	static void assertSameDataset(Dataset a, Dataset b) {
+		assertEquals(a.toString(), b.toString());
+		for(int i = 0; i<a.getNumberOfDifferentGenotypes(); i++){
+			assertEquals(a.getSamples(i), b.getSamples(i));
+		}
+	}
+	
+	@Test
+	public void testStreamReader() throws IOException {
+		File f = writeCAPRIFile();
+		Dataset scanner = new Dataset();
+		scanner.readCAPRI(f.getPath(), ReaderMode.SCANNER);
+		scanner.compact();
+		Dataset stream = new Dataset();
+		stream.readCAPRI(f.getPath(), ReaderMode.STREAM);
+		stream.compact();
+		assertSameDataset(scanner, stream);
+		assertEquals(3, stream.getNumberOfDifferentGenotypes());
+	}
+	
+	@Test
+	public void testMappedReader() throws IOException {
+		File f = writeCAPRIFile();
+		Dataset stream = new Dataset();
+		stream.readCAPRI(f.getPath(), ReaderMode.STREAM);
+		stream.compact();
+		Dataset mapped = new Dataset();
+		mapped.readCAPRI(f.getPath(), ReaderMode.MAPPED);
+		mapped.compact();
+		assertSameDataset(stream, mapped);
+		
+		/* tokens crossing the border of mapped windows */
+		MatrixTokenizer small = new MatrixTokenizer(FileChannel.open(f.toPath(), StandardOpenOption.READ), 3);
+		MatrixTokenizer reference = new MatrixTokenizer(new java.io.FileInputStream(f));
+		while(reference.hasNext()){
+			assertTrue(small.hasNext());
+			assertEquals(reference.next(), small.next());
+		}
+		assertFalse(small.hasNext());
+		small.close();
+		reference.close();
+	}
+	
+	@Test
+	public void testMappedReaderBML() throws IOException {
+		File f = File.createTempFile("dataset", ".bml");
+		f.deleteOnExit();
+		PrintStream out = new PrintStream(f);
+		out.println("5 3");
+		out.println("A B C");
+		out.println("s1 1 0 0");
+		out.println("s2 1 1 0\r");
+		out.println("s3 0 0 0");
+		out.println("s4 1 0 0");
+		out.println("s5 0 1 1");
+		out.close();
+		Dataset stream = new Dataset();
+		stream.read(f.getPath(), ReaderMode.STREAM);
+		stream.compact();
+		Dataset mapped = new Dataset();
+		mapped.read(f.getPath(), ReaderMode.MAPPED);
+		mapped.compact();
+		assertEquals(3, stream.getNumberOfDifferentGenotypes());
+		assertEquals(stream.getNumberOfDifferentGenotypes(), mapped.getNumberOfDifferentGenotypes());
+		for(int i = 0; i<stream.getNumberOfDifferentGenotypes(); i++){
+			assertArrayEquals(stream.get(i), mapped.get(i));
+			assertEquals(stream.frequencyOf(i), mapped.frequencyOf(i));
+			assertEquals(stream.getSamples(i), mapped.getSamples(i));
+		}
+		/* same data set of the CAPRI file */
+		Dataset capri = new Dataset();
+		capri.readCAPRI(writeCAPRIFile().getPath(), ReaderMode.STREAM);
+		capri.compact();
+		assertSameDataset(capri, mapped);
+	}
+	
+	@Test
+	public void testNonASCIINames() throws IOException {
+		File f = File.createTempFile("dataset", ".capri");
+		f.deleteOnExit();
+		java.io.FileOutputStream out = new java.io.FileOutputStream(f);
+		out.write("s\\g A B C\ns\u00e9 1 0 0\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+		out.write(new byte[]{'s', (byte) 0xFF, ' ', '1', ' ', '1', ' ', '0', '\n'});
+		out.write("s3 0 1 1\n".getBytes(java.nio.charset.StandardCharsets.UTF_8));
+		out.close();
+		Dataset scanner = new Dataset();
+		scanner.readCAPRI(f.getPath(), ReaderMode.SCANNER);
+		scanner.compact();
+		for(ReaderMode mode : new ReaderMode[]{ReaderMode.STREAM, ReaderMode.MAPPED}){
+			Dataset d = new Dataset();
+			d.readCAPRI(f.getPath(), mode);
+			d.compact();
+			/* bytes >= 0x80 do not end the input */
+			assertEquals(3, d.getNumberOfGenotypes());
+			assertEquals(scanner.getNumberOfDifferentGenotypes(), d.getNumberOfDifferentGenotypes());
+			for(int i = 0; i<d.getNumberOfDifferentGenotypes(); i++){
+				assertArrayEquals(scanner.get(i), d.get(i));
+				assertEquals(scanner.frequencyOf(i), d.frequencyOf(i));
+			}
+			assertEquals("[s\u00e9]", d.getSamples(0).toString());
+		}
+	}
+	
+	@Test
+	public void testParallelReader() throws IOException {
+		File f = writeCAPRIFile();
+		Dataset stream = new Dataset();
+		stream.readCAPRI(f.getPath(), ReaderMode.STREAM);
+		stream.compact();
+		Dataset parallel = new Dataset();
+		FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		parallel.readDataCAPRIParallel(channel, 4, 1);
+		channel.close();
+		assertEquals(5, parallel.getNumberOfGenotypes());
+		assertEquals("s2", parallel.getSamples(1).get(0));
+		parallel.compact();
+		assertEquals(stream.getNumberOfDifferentGenotypes() + 1, parallel.getNumberOfDifferentGenotypes()); // clonal genotype not filtered
+	}
+	
+	@Test
+	public void testBinaryFormat() throws IOException {
+		File f = writeCAPRIFile();
+		Dataset original = new Dataset();
+		original.readCAPRI(f.getPath());
+		original.compact();
+		File binary = File.createTempFile("dataset", ".gepd");
+		binary.deleteOnExit();
+		original.save(binary.getPath());
+		Dataset loaded = new Dataset();
+		loaded.load(binary.getPath());
+		assertSameDataset(original, loaded);
+		assertEquals(original.getNumberOfGenotypes(), loaded.getNumberOfGenotypes());
+		/* a loaded data set can be modified (its mapped sections are copied first) */
+		boolean[][] more = new boolean[][]{{true, false, false}, {false, false, true}};
+		original.append(new String[]{"s6", "s7"}, more);
+		loaded.append(new String[]{"s6", "s7"}, more);
+		assertSameDataset(original, loaded);
+		Dataset reloaded = new Dataset();
+		reloaded.load(binary.getPath());
+		assertEquals(4, reloaded.getNumberOfGenotypes());
+	}
+	
+	@Test
+	public void testSparseReader() throws IOException {
+		File f = File.createTempFile("dataset", ".sparse");
+		f.deleteOnExit();
+		PrintStream out = new PrintStream(f);
+		out.println("s1 A");
+		out.println("s2 A");
+		out.println("s2 B");
+		out.println("s4 A");
+		out.println("s5 B");
+		out.println("s5 C");
+		out.close();
+		Dataset sparse = new Dataset();
+		sparse.readSparse(f.getPath());
+		sparse.compact();
+		Dataset dense = new Dataset();
+		dense.readCAPRI(writeCAPRIFile().getPath());
+		dense.compact();
+		assertSameDataset(dense, sparse);
+	}
+	
+	@Test
+	public void testColumnIndex() throws IOException, InvalidThresholdException {
+		Dataset d = new Dataset();
+		d.readCAPRI(writeCAPRIFile().getPath());
+		d.compact();
+		ColumnIndex index = d.getColumnIndex();
+		assertArrayEquals(new int[]{2, 2, 1}, index.getCounts());
+		java.util.ArrayList<Integer> frequencies = new java.util.ArrayList<Integer>();
+		for(int row = 0; row<d.getNumberOfDifferentGenotypes(); row++){
+			frequencies.add(d.frequencyOf(row));
+		}
+		/* s1, s2, s4 */
+		assertEquals(3, index.weightedCount(0, frequencies));
+		for(int gene = 0; gene<d.getNumberOfGenes(); gene++){
+			int expected = -1;
+			for(int row = 0; row<d.getNumberOfDifferentGenotypes(); row++){
+				assertEquals(d.get(row)[gene], index.isMutated(gene, row));
+				if(expected == -1 && d.get(row)[gene]){
+					expected = row;
+				}
+			}
+			assertEquals(expected, index.nextRow(gene, 0));
+		}
+		/* A and B are tied */
+		assertArrayEquals(new int[]{0, 1}, index.topGenes(1));
+		assertSame(index, d.getColumnIndex());
+		d.shrink(1);
+		assertEquals(2, d.getNumberOfGenes());
+		assertEquals("[A]", d.translate(new boolean[]{true, false}).toString());
+		assertNotSame(index, d.getColumnIndex());
+	}
+	
+	@Test
+	public void testStreamingShrink() throws IOException, InvalidThresholdException {
+		File f = writeCAPRIFile();
+		for(int thres = 1; thres<=3; thres++){
+			Dataset shrunk = new Dataset();
+			shrunk.readCAPRI(f.getPath());
+			shrunk.compact();
+			shrunk.shrink(thres);
+			Dataset streamed = new Dataset();
+			streamed.readCAPRIShrunk(f.getPath(), thres);
+			assertEquals(shrunk.toString(), streamed.toString());
+			for(int i = 0; i<shrunk.getNumberOfDifferentGenotypes(); i++){
+				assertEquals(new java.util.HashSet<String>(shrunk.getSamples(i)), new java.util.HashSet<String>(streamed.getSamples(i)));
+			}
+		}
+	}
+	
+	@Test
+	public void testSampleIds() throws IOException {
+		Dataset d = new Dataset();
+		d.readCAPRI(writeCAPRIFile().getPath(), ReaderMode.STREAM);
+		d.compact();
+		SampleDictionary names = d.getSampleNames();
+		assertEquals(5, names.size());
+		for(int i = 0; i<d.getNumberOfDifferentGenotypes(); i++){
+			assertEquals(d.frequencyOf(i), d.getSampleIds(i).length);
+			assertEquals(d.getSamples(i), names.resolve(d.getSampleIds(i)));
+		}
+		/* s1 and s4 share the same genotype, in input order */
+		assertEquals("[s1, s4]", d.getSamples(0).toString());
+	}
+	
+	@Test
+	public void testSampleDictionary() {
+		/* an empty dictionary read from a file grows when a name is added */
+		SampleDictionary empty = SampleDictionary.wrap(java.nio.ByteBuffer.allocate(0), java.nio.IntBuffer.wrap(new int[]{0}), 0);
+		for(int i = 0; i<200; i++){
+			assertEquals(i, empty.add("s" + i));
+		}
+		assertEquals("s199", empty.get(199));
+		/* names are not deduplicated */
+		SampleDictionary names = new SampleDictionary();
+		assertEquals(0, names.add("s1"));
+		assertEquals(1, names.add("s1"));
+		assertEquals("[s1, s1]", names.resolve(new int[]{0, 1}).toString());
+	}
+	
+	@Test
+	public void testAppend() throws IOException {
+		Dataset d = new Dataset();
+		d.readCAPRI(writeCAPRIFile().getPath());
+		d.compact();
+		java.util.ArrayList<Integer> changed = d.append(new String[]{"s6", "s7", "s8"}, 
+				new boolean[][]{{true, true, false}, {false, false, true}, {false, false, false}});
+		/* 001 is inserted before 100, 110 is the last genotype */
+		assertEquals("[0, 3]", changed.toString());
+		
+		Dataset expected = new Dataset();
+		expected.read(new String[]{"A", "B", "C"}, new boolean[][]{
+			{true, false, false}, {true, true, false}, {true, false, false}, {false, true, true}, 
+			{true, true, false}, {false, false, true}});
+		expected.compact();
+		assertEquals(expected.toString(), d.toString());
+		assertEquals("[s2, s6]", d.getSamples(3).toString());
+		assertEquals("[s7]", d.getSamples(0).toString());
+	}
+	
+	@Test
+	public void testMerge() throws IOException {
+		Dataset a = new Dataset();
+		a.readCAPRI(writeCAPRIFile().getPath());
+		a.compact();
+		Dataset b = new Dataset();
+		b.read(new String[]{"C", "A"}, new boolean[][]{{true, true}, {false, true}});
+		Dataset c = new Dataset();
+		c.read(new String[]{"D"}, new boolean[][]{{true}});
+		c.compact();
+		
+		Dataset merged = Dataset.merge(a, b, c);
+		Dataset expected = new Dataset();
+		expected.read(new String[]{"A", "B", "C", "D"}, new boolean[][]{
+			{true, false, false, false}, {true, true, false, false}, {true, false, false, false}, {false, true, true, false}, 
+			{true, false, true, false}, {true, false, false, false}, {false, false, false, true}});
+		expected.compact();
+		assertEquals(expected.toString(), merged.toString());
+		assertEquals("[s1, s4, s_2]", merged.getSamples(1).toString());
+		
+		/* associativity */
+		assertSameDataset(Dataset.merge(Dataset.merge(a, b), c), Dataset.merge(a, Dataset.merge(b, c)));
+		assertSameDataset(merged, Dataset.merge(Dataset.merge(a, b), c));
+	}
+	
+	@Test
+	public void testWriters() throws IOException {
+		Dataset d = new Dataset();
+		d.readCAPRI(writeCAPRIFile().getPath());
+		d.compact();
+		java.io.ByteArrayOutputStream expected = new java.io.ByteArrayOutputStream();
+		PrintStream out = new PrintStream(expected);
+		d.printTRONCOFormat(out);
+		out.flush();
+		String nl = System.lineSeparator();
+		assertEquals("s\\g A B C " + nl + "s1 1 0 0 " + nl + "s4 1 0 0 " + nl + "s5 0 1 1 " + nl + "s2 1 1 0 " + nl, expected.toString());
+		
+		File f = File.createTempFile("dataset", ".capri.gz");
+		f.deleteOnExit();
+		d.printTRONCOFormat(f.getPath(), true);
+		java.io.InputStream in = new java.util.zip.GZIPInputStream(new java.io.FileInputStream(f));
+		java.io.ByteArrayOutputStream decompressed = new java.io.ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while((read = in.read(buffer)) > 0){
+			decompressed.write(buffer, 0, read);
+		}
+		in.close();
+		assertEquals(expected.toString(), decompressed.toString());
+		
+		/* plain file, read back */
+		d.printTRONCOFormat(f.getPath(), false);
+		Dataset copy = new Dataset();
+		copy.readCAPRI(f.getPath());
+		copy.compact();
+		assertSameDataset(d, copy);
+	}
+	
+	@Test
+	public void testShrunkView() throws IOException, InvalidThresholdException {
+		File f = writeCAPRIFile();
+		Dataset d = new Dataset();
+		d.readCAPRI(f.getPath());
+		d.compact();
+		String original = d.toString();
+		for(int thres = 1; thres<=3; thres++){
+			Dataset shrunk = new Dataset();
+			shrunk.readCAPRI(f.getPath());
+			shrunk.compact();
+			shrunk.shrink(thres);
+			assertSameDataset(shrunk, d.shrunkView(thres));
+		}
+		assertEquals(original, d.toString());
+		
+		/* appending to a view or to the data set does not change the other one */
+		Dataset view = d.shrunkView(3);
+		view.append("s6", new boolean[]{true, false, false});
+		d.append("s7", new boolean[]{false, false, true});
+		assertEquals(6, d.getSampleNames().size());
+		assertEquals("s7", d.getSampleNames().get(5));
+		assertEquals("s6", view.getSampleNames().get(5));
+		assertEquals("[s1, s4, s6]", view.getSamples(0).toString());
+		assertEquals("[s1, s4]", d.getSamples(1).toString());
+	}
+	
+	@Test
+	public void testCollapseEquivalentGenes() {
+		boolean[][] data = new boolean[][]{
+			{true, false, true, false}, {true, true, true, true}, {false, true, false, true}, {true, false, true, false}};
+		Dataset d = new Dataset();
+		d.read(new String[]{"A", "B", "C", "D"}, data);
+		d.compact();
+		Dataset original = new Dataset();
+		original.read(new String[]{"A", "B", "C", "D"}, data);
+		original.compact();
+		
+		assertEquals(2, d.collapseEquivalentGenes());
+		assertEquals("[A|C, B|D]", d.toString().split("\n")[0]);
+		assertEquals("[A, C]", d.getOriginalLabels(0).toString());
+		/* same genotypes in the same order, translated on the original genes */
+		assertEquals(original.getNumberOfDifferentGenotypes(), d.getNumberOfDifferentGenotypes());
+		for(int i = 0; i<d.getNumberOfDifferentGenotypes(); i++){
+			assertEquals(original.translate(original.getPacked(i)), d.translate(d.getPacked(i)));
+			assertEquals(original.frequencyOf(i), d.frequencyOf(i));
+			assertEquals(original.mutationCount(original.getPacked(i)), d.mutationCount(d.getPacked(i)));
+		}
+		assertEquals(4, d.distance(d.getPacked(0), d.getPacked(1)));
+		assertEquals(0, d.collapseEquivalentGenes());
+	}
+	
+	@Test
+	public void testCollapsedSaveAndMerge() throws IOException {
+		boolean[][] data = new boolean[][]{
+			{true, false, true, false}, {true, true, true, true}, {false, true, false, true}, {true, false, true, false}, {true, true, true, true}};
+		Dataset original = new Dataset();
+		original.read(new String[]{"A", "B", "C", "D"}, data);
+		original.compact();
+		Dataset d = new Dataset();
+		d.read(new String[]{"A", "B", "C", "D"}, data);
+		d.compact();
+		d.collapseEquivalentGenes();
+		
+		/* the original genes are saved with the data set */
+		File binary = File.createTempFile("dataset", ".gepd");
+		binary.deleteOnExit();
+		d.save(binary.getPath());
+		Dataset loaded = new Dataset();
+		loaded.load(binary.getPath());
+		assertSameDataset(d, loaded);
+		assertEquals("[A, C]", loaded.getOriginalLabels(0).toString());
+		for(int i = 0; i<d.getNumberOfDifferentGenotypes(); i++){
+			assertEquals(d.mutationCount(d.getPacked(i)), loaded.mutationCount(loaded.getPacked(i)));
+			assertEquals(original.translate(original.getPacked(i)), loaded.translate(loaded.getPacked(i)));
+		}
+		
+		/* merging expands the collapsed genes */
+		Dataset other = new Dataset();
+		other.read(new String[]{"C", "E"}, new boolean[][]{{true, true}});
+		other.compact();
+		assertSameDataset(Dataset.merge(original, other), Dataset.merge(loaded, other));
+		assertSameDataset(Dataset.merge(original, other), Dataset.merge(d, other));
+	}
+	
+	@Test
+	public void testFoldRareGenotypes() {
+		Dataset d = new Dataset();
+		d.read(new String[]{"A", "B", "C"}, new boolean[][]{
+			{true, false, false}, {true, false, false}, {true, true, false}, {true, true, false}, 
+			{true, true, true}, {false, false, true}});
+		d.compact();
+		/* 001 has no supported subset, 111 is folded into 110 */
+		assertEquals(1, d.foldRareGenotypes(2));
+		assertEquals(3, d.getNumberOfDifferentGenotypes());
+		assertEquals("[A, B]", d.translate(d.getPacked(2)).toString());
+		assertEquals(3, d.frequencyOf(2));
+		assertEquals("[s_3, s_4, s_5]", d.getSamples(2).toString());
+		assertEquals(6, d.getNumberOfGenotypes());
+	}
+	
 }
@@ -0,0 +1,41 @@
+package Datasets;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import Utils.Utils;
+
+public class TestPackedGenotypeStore {
+
+	@Test
+	public void testPackAndCompare() {
+		PackedGenotypeStore store = new PackedGenotypeStore(70);
+		boolean[] a = new boolean[70];
+		boolean[] b = new boolean[70];
+		a[0] = true; a[65] = true;
+		b[1] = true; b[65] = true; b[69] = true;
+		store.add(a);
+		store.add(b);
+
+		assertArrayEquals(a, store.get(0));
+		assertArrayEquals(b, store.get(1));
+		assertEquals(Utils.sumBool(a), store.mutationCount(0));
+		assertEquals(Utils.sumBool(b), store.mutationCount(1));
+		assertEquals(Utils.genotypeBinaryValueCompare(a, b), store.compare(0, 1));
+		assertEquals(Utils.genotypeBinaryValueCompare(b, a), store.compare(1, 0));
+		assertEquals(Utils.hammingDistance(a, b), store.hammingDistance(0, 1));
+		assertFalse(store.isSubseteq(0, 1));
+		assertArrayEquals(Utils.pack(a), store.getPacked(0));
+	}
+
+	@Test
+	public void testProject() {
+		PackedGenotypeStore store = new PackedGenotypeStore(4);
+		boolean[] a = {true, false, true, true};
+		store.add(a);
+		PackedGenotypeStore projected = store.project(new int[]{3, 1});
+		assertArrayEquals(new boolean[]{true, false}, projected.get(0));
+	}
+
+}
@@ -2,9 +2,9 @@ package GenotypeGraph;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Scanner;
 
-import Utils.SquareMatrix;
+import Datasets.MatrixTokenizer;
+import Utils.BitSquareMatrix;
 import Utils.Triplet;
 import Utils.Utils;
 
@@ -28,7 +28,7 @@ public class GenotypeGraph {
 	/**
 	 * edges of this graph
 	 */
-	SquareMatrix<Boolean> E = new SquareMatrix<Boolean>(false);
+	BitSquareMatrix E = new BitSquareMatrix(0, true);
 	/**
 	 * identifier used to give each node a unique number 
 	 */
@@ -104,7 +104,7 @@ public class GenotypeGraph {
 	 * sampleID and relative boolean array of mutation presence '\n' (repeated #samples times) 
 	 */
 	private void readInput() {
-		Scanner in = new Scanner(System.in);
+		MatrixTokenizer in = new MatrixTokenizer(System.in);
 		int nSamples = in.nextInt();
 		int nGenes = in.nextInt();
 		
@@ -117,7 +117,7 @@ public class GenotypeGraph {
 			boolean[] temp = new boolean[nGenes];
 			in.next(); // ignore sample label
 			for(int j=0; j<nGenes; j++){ // mutations in sample 
-				temp[j] = in.nextInt()==1?true:false;
+				temp[j] = in.nextCell();
 			}
 			tempSamples.add(temp);
 		}
@@ -160,9 +160,7 @@ public class GenotypeGraph {
 	 * Initialize adjacency Matrix (note, use after genotype compression!)
 	 */
 	void setupAdjMatrix(){
-		for(int i=0; i<V.size(); i++){
-			E.enlarge();
-		}
+		E.enlarge(V.size());
 	}
 
 	/**
@@ -244,10 +242,8 @@ public class GenotypeGraph {
 	 */
 	void toDotEdges() {
 		for(int i=0; i<E.getSize(); i++){
-			for(int j=0; j<E.getSize(); j++){
-				if(E.get(i, j)){
-					System.out.println(i + " -> " + j);
-				}
+			for(int j=E.nextSetInRow(i, 0); j!=-1; j=E.nextSetInRow(i, j+1)){
+				System.out.println(i + " -> " + j);
 			}
 		}
 	}
@@ -3,7 +3,7 @@ package GenotypeGraph;
 import java.util.ArrayList;
 import java.util.Collections;
 
-import Utils.SquareMatrix;
+import Utils.BitSquareMatrix;
 
 /**
  * Generates a graph connecting all nodes with equal genotypes 
@@ -119,10 +119,7 @@ public class GenotypeGraphSimple extends GenotypeGraph{
 			n.id = this.id;
 			this.id++;
 		}
-		this.E = new SquareMatrix<Boolean>(false);
-		for(int i=0; i<V.size(); i++){
-			E.enlarge();
-		}
+		this.E = new BitSquareMatrix(V.size(), true);
 	}
 	
 	/**
@@ -131,10 +128,8 @@ public class GenotypeGraphSimple extends GenotypeGraph{
 	 */
 	protected ArrayList<GenotypeNode> getParentsOf(GenotypeNode n){
 		ArrayList<GenotypeNode>  pList = new ArrayList<GenotypeNode>();
-		for(int i=0; i<E.getSize(); i++){
-			if(E.get(i, n.id)){
-				pList.add(V.get(i));
-			}
+		for(int i=E.nextSetInColumn(n.id, 0); i!=-1; i=E.nextSetInColumn(n.id, i+1)){
+			pList.add(V.get(i));
 		}
 		return pList;
 	}
@@ -145,10 +140,8 @@ public class GenotypeGraphSimple extends GenotypeGraph{
 	 */
 	protected ArrayList<GenotypeNode> getChildrenOf(GenotypeNode n){
 		ArrayList<GenotypeNode>  cList = new ArrayList<GenotypeNode>();
-		for(int j=0; j<E.getSize(); j++){
-			if(E.get(n.id, j)){
-				cList.add(V.get(j));
-			}
+		for(int j=E.nextSetInRow(n.id, 0); j!=-1; j=E.nextSetInRow(n.id, j+1)){
+			cList.add(V.get(j));
 		}
 		return cList;
 	}
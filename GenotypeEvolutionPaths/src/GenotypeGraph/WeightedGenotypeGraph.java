@@ -3,8 +3,8 @@ package GenotypeGraph;
 import java.util.ArrayList;
 
 import MarkovChains.MarkovChain;
+import Utils.DoubleSquareMatrix;
 import Utils.Pair;
-import Utils.SquareMatrix;
 import Utils.Utils;
 
 /**
@@ -26,16 +26,16 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 	/**
 	 * sum of weights of reachable nodes using direct edges
 	 */
-	SquareMatrix<Double> upWeights = new SquareMatrix<Double>(0.);   
+	DoubleSquareMatrix upWeights = new DoubleSquareMatrix();   
 	/**
 	 * sum of weights of reachable nodes using reverse edges
 	 */
-	SquareMatrix<Double> downWeights = new SquareMatrix<Double>(0.);
+	DoubleSquareMatrix downWeights = new DoubleSquareMatrix();
 	/**
 	 * final weights computed with this formula:
 	 * W(<a,b>) = [Wdown(<a,b>)*(Wup(<a,b>)/Wup(b))]/[sum_{x \in a.Adj}Wdown(<a,x>)*(Wup(<a,x>)/Wup(x)]
 	 */
-	SquareMatrix<Double> W = new SquareMatrix<Double>(0.);
+	DoubleSquareMatrix W = new DoubleSquareMatrix();
 	
 	/**
 	 * lookup table to avoid multiple computations of the number of parents of a node
@@ -117,14 +117,12 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 	
 	/**
 	 * Initialization of weight matrices
-	 * (size setup)
+	 * (size setup, each matrix is allocated once)
 	 */
 	private void initWeights() {
-		for(int i=0; i<E.getSize(); i++){
-			upWeights.enlarge();
-			downWeights.enlarge();
-			W.enlarge();
-		}
+		upWeights.enlarge(E.getSize());
+		downWeights.enlarge(E.getSize());
+		W.enlarge(E.getSize());
 	}
 
 	/**
@@ -135,11 +133,8 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 		nParents = new int[E.getSize()];
 		nChildren = new int[E.getSize()];
 		for(int i=0; i<E.getSize(); i++){
-			for(int j=0; j<E.getSize(); j++){
-				int found = E.get(i,j)?1:0;
-				nParents[j] += found;
-				nChildren[i] += found;
-			}
+			nParents[i] = E.countColumn(i);
+			nChildren[i] = E.countRow(i);
 		}
 	}
 
@@ -150,14 +145,13 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 	private void setFinalWeights() {
 		/* compute [Wdown(<a,b>)*(Wup(<a,b>)/Wup(b))] */
 		for(int i = 0; i<V.size(); i++){
-			for(int j = 0; j<E.getSize(); j++){
-				if(E.get(i, j) == false) continue;
-				W.set(i, j, downWeights.get(i, j)*(upWeights.get(i, j)/Utils.sumDoubleCol(upWeights, j)));
+			for(int j = E.nextSetInRow(i, 0); j != -1; j = E.nextSetInRow(i, j+1)){
+				W.set(i, j, downWeights.get(i, j)*(upWeights.get(i, j)/upWeights.sumColumn(j)));
 			}
 		}
 		/* normalize by [sum_{x \in a.Adj}Wdown(<a,x>)*(Wup(<a,x>)/Wup(x)] */
 		for(int i = 0; i<W.getSize(); i++){
-			Double normFactor = Utils.sumDoubleRow(W, i);
+			double normFactor = W.sumRow(i);
 			for(int j = 0; j<W.getSize(); j++){
 				W.set(i, j, W.get(i, j)/normFactor);
 			}
@@ -209,7 +203,7 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 		
 		weightReachableFromNode[node.id]+=node.probability;
 		
-		double norm = Utils.sumDoubleCol(upWeights, node.id);
+		double norm = upWeights.sumColumn(node.id);
 		
 		for(GenotypeNode parent : getParentsOf(node)){
 			weightReachableFromNode[parent.id]+=weightReachableFromNode[node.id]*upWeights.get(parent.id,node.id)/norm;
@@ -281,8 +275,7 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 	@Override
 	void toDotEdges(){
 		for(int i=0; i<E.getSize(); i++ ){
-			for(int j=0; j<E.getSize(); j++){
-				if(!(E.get(i, j))) continue;
+			for(int j=E.nextSetInRow(i, 0); j!=-1; j=E.nextSetInRow(i, j+1)){
 				System.out.println(i + " -> " + j + " [label=\"" + String.format("%.3f", this.W.get(i, j)) +
 						"\nDown: "  + String.format("%.3f", this.downWeights.get(i, j)) + 
 						"\nUp: "  + String.format("%.3f", this.upWeights.get(i,j)) +  "\"]");
@@ -327,8 +320,7 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 			}
 		}
 		
-		for(int i = 0; i<E.getSize(); i++){
-			if(!E.get(position.id,i)) continue;
+		for(int i = E.nextSetInRow(position.id, 0); i != -1; i = E.nextSetInRow(position.id, i+1)){
 			if(inEdges[i] == nParents[i]){
 				reducedToDotRec(V.get(i),limit,inEdges, touched);
 			}
@@ -347,8 +339,7 @@ public class WeightedGenotypeGraph extends GenotypeGraphSimple {
 	 */
 	private ArrayList<Integer> getBestEdges(int pos, int limit, int[] inEdges) {
 		ArrayList<Pair<Integer, Double>> weights = new ArrayList<Pair<Integer, Double>>();
-		for(int i=0; i<E.getSize(); i++){
-			if(!E.get(pos, i)) continue;
+		for(int i=E.nextSetInRow(pos, 0); i!=-1; i=E.nextSetInRow(pos, i+1)){
 			weights.add(new Pair<Integer, Double>(i, W.get(pos,i)));
 			inEdges[i]++;
 		}
@@ -4,15 +4,30 @@ import java.io.PrintStream;
 
 import Datasets.Dataset;
 import Graphs.DirectedWeightedGraphMatrix;
+import Graphs.DirectedWeightedGraphSparse;
 import Graphs.SimpleNode;
+import Graphs.WeightedGraph;
 
 public abstract class GenotypeGraph {
 
-	DirectedWeightedGraphMatrix<GenotypeInfo> structure = new  DirectedWeightedGraphMatrix<GenotypeInfo>();
+	WeightedGraph<GenotypeInfo> structure;
 	Dataset dataset;
 	
 	public GenotypeGraph(Dataset dataset){
+		this(dataset, false);
+	}
+	
+	/**
+	 * @param dataset
+	 * @param sparse  true to use a sparse graph (O(V+E) memory, for many genotypes), false for an adjacency matrix
+	 */
+	public GenotypeGraph(Dataset dataset, boolean sparse){
 		this.dataset = dataset;
+		if(sparse){
+			this.structure = new DirectedWeightedGraphSparse<GenotypeInfo>();
+		}else{
+			this.structure = new DirectedWeightedGraphMatrix<GenotypeInfo>();
+		}
 		addNodes();
 		addEdges();
 		addWeights();
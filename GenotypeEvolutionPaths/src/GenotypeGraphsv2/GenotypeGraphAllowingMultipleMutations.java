@@ -5,7 +5,6 @@ import java.util.ArrayList;
 
 import Datasets.Dataset;
 import Graphs.Node;
-import Utils.SquareMatrix;
 import Utils.Utils;
 
 /**
@@ -37,7 +36,18 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 	 * @param printSamples
 	 */
 	public GenotypeGraphAllowingMultipleMutations(Dataset dataset, boolean printGenotypes, boolean printSamples) {
-		super(dataset);
+		this(dataset, printGenotypes, printSamples, false);
+	}
+
+	/**
+	 * constructor with printing information and choice of the graph representation
+	 * @param dataset REQUIRE is compacted and its genotypes are sorted by number of mutations 
+	 * @param printGenotypes
+	 * @param printSamples
+	 * @param sparse true to use a sparse graph (for data sets with many distinct genotypes)
+	 */
+	public GenotypeGraphAllowingMultipleMutations(Dataset dataset, boolean printGenotypes, boolean printSamples, boolean sparse) {
+		super(dataset, sparse);
 		/* set printing information */
 		for(Node<GenotypeInfo> info : genotypes ){
 			info.getContent().setPrintPreferences(printGenotypes, printSamples);
@@ -54,7 +64,7 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 		root = genotypes.get(0);
 		
 		for(int i=0; i<this.dataset.getNumberOfDifferentGenotypes(); i++){
-			GenotypeInfo gntInfo = new GenotypeInfo(this.dataset.get(i), this.dataset ,i, this.dataset.getSamples(i));
+			GenotypeInfo gntInfo = new GenotypeInfo(this.dataset.getPacked(i), this.dataset ,i);
 			genotypes.add(structure.add(gntInfo));
 		}
 	}
@@ -65,12 +75,15 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 		for(int i = 0; i< genotypes.size(); i++){
 			int minDist = Integer.MAX_VALUE;
 			/* it uses the order of the genotypes to reduce computations */
+			long[] current = genotypes.get(i).getContent().getPacked();
 			for(int j=i-1; j>=0; j--){
-				if(!Utils.isSubseteq(genotypes.get(j).getContent().get(), genotypes.get(i).getContent().get())) continue;
-				if(minDist < Utils.hammingDistance(genotypes.get(i).getContent().get(), genotypes.get(j).getContent().get())) break;
+				long[] candidate = genotypes.get(j).getContent().getPacked();
+				if(!Utils.isSubseteq(candidate, current)) continue;
+				int dist = dataset.distance(current, candidate);
+				if(minDist < dist) break;
 				/* link b to a*/
 				this.structure.link(genotypes.get(j), genotypes.get(i));
-				minDist =  Utils.hammingDistance(genotypes.get(i).getContent().get(), genotypes.get(j).getContent().get());	
+				minDist = dist;	
 			}	
 		}
 	}
@@ -78,27 +91,22 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 	@Override
 	void addWeights() {
 		
-		SquareMatrix<Double> upWeights = computeUpWeights();
-		normalizeUp(upWeights);
-		/* UNCOMMENT down here to print upWeights */
-		//this.structure.setWeights(upWeights);
-		//this.toDot(System.out);
-		/* UNCOMMENT up here to print upWeights */
-		SquareMatrix<Double> downWeights = computeDownWeights(upWeights);
-		normalizeDown(downWeights);
-		this.structure.setWeights(downWeights);
-		
+		double[] upWeights = computeUpWeights();
+		double[] upNorms = normalizeUp(upWeights);
+		computeDownWeights(upWeights, upNorms);
+		normalizeDown();
 		
 	}
 	
 	/**
 	 * Compute upWeights using dynamic programming
 	 * (step 1)
-	 * @return the matrix of the upWeights
+	 * NOTE: a node gives the same upWeight to all its out-coming edges,
+	 *       so upWeights are stored once per node (upWeights[a] = Wup(<a,x>) for each child x)
+	 * @return the upWeights of the edges out-coming from each node
 	 */
-	private SquareMatrix<Double> computeUpWeights() {
-		SquareMatrix<Double> upWeights = new SquareMatrix<Double>(0.);
-		upWeights.enlarge(genotypes.size());
+	private double[] computeUpWeights() {
+		double[] upWeights = new double[genotypes.size()];
 		
 		int[] memoIn = new int[genotypes.size()];
 		
@@ -113,12 +121,12 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 	 * @param memoIn    incoming edges considered for each node
 	 * @param upWeights table of the upWeights
 	 */
-	private void computeUpWeightsRec(Node<GenotypeInfo> position, int[] memoIn, SquareMatrix<Double> upWeights) {
+	private void computeUpWeightsRec(Node<GenotypeInfo> position, int[] memoIn, double[] upWeights) {
 		
 		/* refer to upWeights formula */
 		double weight = 0.;
 		for(Node<GenotypeInfo> parent : structure.par(position) ){
-			weight += upWeights.get(parent.getId(), position.getId());
+			weight += upWeights[parent.getId()];
 		}
 		weight += position.getContent().getObservedProbability();
 		if(weight>0){
@@ -126,9 +134,9 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 		}else {
 			weight = 0.; // epsilon
 		}
+		upWeights[position.getId()] = weight;
 		
 		for(Node<GenotypeInfo> child : structure.adj(position) ){
-			upWeights.set(position.getId(), child.getId(), weight);
 			memoIn[child.getId()]++;
 			if(memoIn[child.getId()] == structure.getNumberOfParents(child)){
 				computeUpWeightsRec(child, memoIn, upWeights);
@@ -139,69 +147,75 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 
 	/**
 	 * Normalization step for up weights:
-	 * for each node normalize the weights of its incoming edges
+	 * for each node compute the normalization factor of its incoming edges
 	 * (step 2)
-	 * @param upWeights normalized upWeigts table
+	 * @param upWeights table of the upWeights
+	 * @return for each node the sum of the upWeights of its incoming edges
 	 */
-	private void normalizeUp(SquareMatrix<Double> upWeights) {		
+	private double[] normalizeUp(double[] upWeights) {
+		double[] norms = new double[genotypes.size()];
 		for(Node<GenotypeInfo> node : genotypes){
 			double norm = 0.;
-			ArrayList<Node<GenotypeInfo>> par = structure.par(node);
-			for(Node<GenotypeInfo> parent : par){
-				norm += upWeights.get(parent.getId(), node.getId());
-			}
-			if(norm == 0.){ /* if it is connected to the root directly */
-				upWeights.set(root.getId(), node.getId(), 1.);
-			}else{
-				for(Node<GenotypeInfo> parent : par){
-					upWeights.set(parent.getId(), node.getId(), upWeights.get(parent.getId(), node.getId())/(double) norm);
-				}
+			for(Node<GenotypeInfo> parent : structure.par(node)){
+				norm += upWeights[parent.getId()];
 			}
-		}	
+			norms[node.getId()] = norm;
+		}
+		return norms;
 	}
 	
 	/**
-	 * Compute upWeights using dynamic programming and upWeights information
+	 * @param parent
+	 * @param node
+	 * @param upWeights table of the upWeights
+	 * @param upNorms   normalization factors of the upWeights
+	 * @return normalized upWeight of the edge from parent to node
+	 */
+	private double normalizedUpWeight(Node<GenotypeInfo> parent, Node<GenotypeInfo> node, double[] upWeights, double[] upNorms){
+		if(upNorms[node.getId()] == 0.){ /* if it is connected to the root directly */
+			return parent == root ? 1. : 0.;
+		}
+		return upWeights[parent.getId()]/upNorms[node.getId()];
+	}
+	
+	/**
+	 * Compute downWeights using dynamic programming and upWeights information,
+	 * downWeights are stored as weights of the edges of the graph
 	 * (step 3)
-	 * @param upWeights
-	 * @return the matrix of the upWeights
+	 * @param upWeights table of the upWeights
+	 * @param upNorms   normalization factors of the upWeights
 	 */
-	private SquareMatrix<Double> computeDownWeights(SquareMatrix<Double> upWeights) {
-		SquareMatrix<Double> downWeights = new SquareMatrix<Double>(0.);
-		downWeights.enlarge(genotypes.size());
-		
+	private void computeDownWeights(double[] upWeights, double[] upNorms) {
 		int[] memoOut = new int[genotypes.size()];
 		
 		for(Node<GenotypeInfo> node : genotypes){
 			if(this.structure.getNumberOfChildren(node) == 0){
-				computeDownWeightsRec(node, memoOut, downWeights, upWeights);
+				computeDownWeightsRec(node, memoOut, upWeights, upNorms);
 			}
 		}
-		
-		return downWeights;
 	}
 	
 	/**
 	 * 
-	 * Recursion for upWeights computation
+	 * Recursion for downWeights computation
 	 * @param position  node reached in the visit
 	 * @param memoOut   out-coming edges considered for each node
-	 * @param downWeights table of the downWeights
 	 * @param upWeights table of the upWeights
+	 * @param upNorms   normalization factors of the upWeights
 	 */
-	private void computeDownWeightsRec(Node<GenotypeInfo> position, int[] memoOut, SquareMatrix<Double> downWeights, SquareMatrix<Double> upWeights) {
+	private void computeDownWeightsRec(Node<GenotypeInfo> position, int[] memoOut, double[] upWeights, double[] upNorms) {
 		/* refer to downWeights formula */
 		double weight = 0.;
 		for(Node<GenotypeInfo> child : structure.adj(position) ){
-			weight += downWeights.get(position.getId(), child.getId());
+			weight += structure.getWeight(position, child);
 		}
 		weight += position.getContent().getObservedProbability();
 		
 		for(Node<GenotypeInfo> parent : structure.par(position) ){
-			downWeights.set(parent.getId(), position.getId() , weight*upWeights.get(parent.getId(), position.getId()));
+			structure.setWeight(parent, position, weight*normalizedUpWeight(parent, position, upWeights, upNorms));
 			memoOut[parent.getId()]++;
 			if(memoOut[parent.getId()] == structure.getNumberOfChildren(parent)){
-				computeDownWeightsRec(parent, memoOut, downWeights ,upWeights);
+				computeDownWeightsRec(parent, memoOut, upWeights, upNorms);
 			}
 		}
 		
@@ -211,18 +225,16 @@ public class GenotypeGraphAllowingMultipleMutations extends GenotypeGraph {
 	 * Normalization step for down weights:
 	 * for each node normalize the weights of its out-coming edges
 	 * (step 4, last)
-	 * @param downWeights table of the downWeights
 	 */
-	private void normalizeDown(SquareMatrix<Double> downWeights) {
+	private void normalizeDown() {
 		for (Node<GenotypeInfo> node : genotypes) {
 			double norm = 0.;
 			ArrayList<Node<GenotypeInfo>> adj = structure.adj(node);
 			for (Node<GenotypeInfo> child : adj) {
-				norm += downWeights.get(node.getId(), child.getId());
+				norm += structure.getWeight(node, child);
 			}
 			for (Node<GenotypeInfo> child : adj) {
-				downWeights.set(node.getId(), child.getId(),
-						downWeights.get(node.getId(), child.getId()) / (double) norm);
+				structure.setWeight(node, child, structure.getWeight(node, child) / (double) norm);
 			}
 		}
 	}
@@ -13,7 +13,14 @@ import Utils.Utils;
  */
 public class GenotypeInfo {
 
-	private boolean[] genotype;
+	/**
+	 * genotype packed in long words
+	 */
+	private long[] genotype;
+	private int numberOfGenes;
+	/**
+	 * samples names (null if they are read from the dataset when printed)
+	 */
 	private ArrayList<String> samples;
 	private int numberOfMutations;
 	private Dataset dataset;
@@ -29,14 +36,35 @@ public class GenotypeInfo {
 	 * @param position in the dataset
 	 */
 	public GenotypeInfo(boolean[] genotype, Dataset dataset, int position, ArrayList<String> samples){
+		this(Utils.pack(genotype), dataset, position, samples);
+	}
+	
+	/**
+	 * Constructor from dataset with an already packed genotype
+	 * @param genotype packed genotype
+	 * @param dataset REQUIRE compacted
+	 * @param position in the dataset
+	 */
+	public GenotypeInfo(long[] genotype, Dataset dataset, int position, ArrayList<String> samples){
 		this.genotype = genotype;
-		this.numberOfMutations = Utils.sumBool(genotype);
+		this.numberOfGenes = dataset.getNumberOfGenes();
+		this.numberOfMutations = Utils.sumBits(genotype);
 		this.dataset=dataset;
 		this.position = position;
 		this.observedProbability = dataset.normalizedFrequencyOf(position);
 		this.samples = samples;
 	}
 	
+	/**
+	 * Constructor from dataset, samples names are resolved only when printed
+	 * @param genotype packed genotype
+	 * @param dataset REQUIRE compacted
+	 * @param position in the dataset
+	 */
+	public GenotypeInfo(long[] genotype, Dataset dataset, int position){
+		this(genotype, dataset, position, null);
+	}
+	
 	/**
 	 * Manual constructor 
 	 * @param genotype
@@ -46,7 +74,8 @@ public class GenotypeInfo {
 	 * @param printGenotypes 
 	 */
 	public GenotypeInfo(boolean[] genotype, Dataset dataset, double observedProbability, ArrayList<String> samples){
-		this.genotype = genotype;
+		this.genotype = Utils.pack(genotype);
+		this.numberOfGenes = genotype.length;
 		this.numberOfMutations = Utils.sumBool(genotype);
 		this.dataset=dataset;
 		this.position = -1;
@@ -58,7 +87,17 @@ public class GenotypeInfo {
 		return this.observedProbability;
 	}
 	
+	/**
+	 * @return a copy of the genotype as an array of booleans
+	 */
 	public boolean[] get(){
+		return Utils.unpack(this.genotype, this.numberOfGenes);
+	}
+	
+	/**
+	 * @return the genotype packed in long words (not a copy, do not modify)
+	 */
+	public long[] getPacked(){
 		return this.genotype;
 	}
 	
@@ -82,7 +121,7 @@ public class GenotypeInfo {
 		if(printGenotypes){
 			s += dataset.translate(genotype).toString() + ", " + String.format("%.3f", this.observedProbability) + "\n";
 		}if(printSamples){
-			s += "Samples: " + this.samples + "\n";
+			s += "Samples: " + (this.samples != null ? this.samples : dataset.getSamples(position)) + "\n";
 		}
 		return s;
 	}
@@ -6,7 +6,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
-import Utils.SquareMatrix;
+import Utils.BitSquareMatrix;
 
 /**
  * Implementation with adj matrix
@@ -20,7 +20,7 @@ public class DirectedGraphMatrix<T> implements Graph<T>
 {
 
 	ArrayList<Node<T>> V = new ArrayList<Node<T>>();
-	SquareMatrix<Boolean> E = new SquareMatrix<Boolean>(false);
+	BitSquareMatrix E = new BitSquareMatrix(0, true);
 	ArrayList<Integer> numberOfParents = new ArrayList<Integer>();
 	ArrayList<Integer> numberOfChildren = new ArrayList<Integer>();
 	
@@ -32,13 +32,7 @@ public class DirectedGraphMatrix<T> implements Graph<T>
 	@Override
 	public List<Node<T>> getAdjacencyList(Node<T> current) throws InvalidNodeException {
 		/* scan adjacency matrix on the line associated with current  */
-		ArrayList<Node<T>> ret = new ArrayList<Node<T>>();
-		for(int j=0; j<E.getSize(); j++){
-			if(E.get(current.getId(), j)){
-				ret.add(V.get(j));
-			}
-		}
-		return ret;
+		return adj(current);
 	}
 
 	@Override
@@ -83,10 +77,8 @@ public class DirectedGraphMatrix<T> implements Graph<T>
 			v.toDot(out);
 		}
 		for(int i=0; i<E.getSize(); i++){
-			for (int j = 0; j < E.getSize(); j++) {
-				if(E.get(i, j)){
-					out.println(i + " -> " + j);
-				}
+			for (int j = E.nextSetInRow(i, 0); j != -1; j = E.nextSetInRow(i, j+1)) {
+				out.println(i + " -> " + j);
 			}
 		}
 		out.println("}");
@@ -94,28 +86,24 @@ public class DirectedGraphMatrix<T> implements Graph<T>
 	
 	/**
 	 * @param position
-	 * @return the adjacency list of position O(V)
+	 * @return the adjacency list of position O(V/64 + children)
 	 */
 	public ArrayList<Node<T>> adj(Node<T> position){
-		ArrayList<Node<T>> ret = new ArrayList<Node<T>>();
-		for(int i = 0; i<E.getSize(); i++){
-			if(E.get(position.getId(), i)){
-				ret.add(this.V.get(i));
-			}
+		ArrayList<Node<T>> ret = new ArrayList<Node<T>>(getNumberOfChildren(position));
+		for(int i = E.nextSetInRow(position.getId(), 0); i != -1; i = E.nextSetInRow(position.getId(), i+1)){
+			ret.add(this.V.get(i));
 		}
 		return ret;
 	}
 	
 	/**
 	 * @param position
-	 * @return the list of parents of position O(V)
+	 * @return the list of parents of position O(V/64 + parents)
 	 */
 	public ArrayList<Node<T>> par(Node<T> position){
-		ArrayList<Node<T>> ret = new ArrayList<Node<T>>();
-		for(int i = 0; i<E.getSize(); i++){
-			if(E.get(i, position.getId())){
-				ret.add(this.V.get(i));
-			}
+		ArrayList<Node<T>> ret = new ArrayList<Node<T>>(getNumberOfParents(position));
+		for(int i = E.nextSetInColumn(position.getId(), 0); i != -1; i = E.nextSetInColumn(position.getId(), i+1)){
+			ret.add(this.V.get(i));
 		}
 		return ret;
 	}
@@ -2,7 +2,7 @@ package Graphs;
 
 import java.io.PrintStream;
 
-import Utils.SquareMatrix;
+import Utils.DoubleSquareMatrix;
 
 /**
  * Class to manage weighted directed graphs 
@@ -12,9 +12,9 @@ import Utils.SquareMatrix;
  *
  * @param <T>
  */
-public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
+public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T> implements WeightedGraph<T>{
 
-	SquareMatrix<Double> W = new SquareMatrix<Double>(0.);
+	DoubleSquareMatrix W = new DoubleSquareMatrix();
 	
 	public DirectedWeightedGraphMatrix(){
 		super();
@@ -26,6 +26,7 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 	 * @param b
 	 * @throws NoEdgeFoundException when a and b are not linked
 	 */
+	@Override
 	public void setWeight(Node<T> a, Node<T> b, double weight) throws NoEdgeFoundException{
 		if(!E.get(a.getId(), b.getId())){
 			throw new NoEdgeFoundException(a.getId(), b.getId());
@@ -45,6 +46,7 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 	 * @param b
 	 * @param weight
 	 */
+	@Override
 	public void link(Node<T> a, Node<T> b, double weight){
 		super.link(a, b);
 		setWeight(a,b, weight);
@@ -57,10 +59,8 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 			v.toDot(out);
 		}
 		for(int i=0; i<E.getSize(); i++){
-			for (int j = 0; j < E.getSize(); j++) {
-				if(E.get(i, j)){
-					out.println(i + " -> " + j + "[label=\"" + String.format("%.3f", W.get(i, j)) + "\"]");
-				}
+			for (int j = E.nextSetInRow(i, 0); j != -1; j = E.nextSetInRow(i, j+1)) {
+				out.println(i + " -> " + j + "[label=\"" + String.format("%.3f", W.get(i, j)) + "\"]");
 			}
 		}
 		out.println("}");
@@ -70,7 +70,7 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 	 * Changes this weight matrix with another one
 	 * @param matrix
 	 */
-	public void setWeights(SquareMatrix<Double> matrix) {
+	public void setWeights(DoubleSquareMatrix matrix) {
 		assert(matrix.getSize() == E.getSize());
 		W = matrix;	
 	}
@@ -80,6 +80,7 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 	 * @param b
 	 * @return weight of edge from a to b
 	 */
+	@Override
 	public double getWeight(Node<T> a ,Node<T> b){
 		if(!E.get(a.getId(), b.getId())) return 0.;
 		return W.get(a.getId(), b.getId());
@@ -89,8 +90,8 @@ public class DirectedWeightedGraphMatrix<T> extends DirectedGraphMatrix<T>{
 	 * get adj matrix
 	 * @return
 	 */
-	public SquareMatrix<Double> getMatrix(){
-		return (SquareMatrix<Double>) new SquareMatrix<Double>(W);
+	public DoubleSquareMatrix getMatrix(){
+		return new DoubleSquareMatrix(W);
 	}
 	
 	/**
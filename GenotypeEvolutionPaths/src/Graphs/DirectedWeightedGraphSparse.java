@@ -0,0 +1,338 @@
+package Graphs;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class to manage weighted directed graphs with compressed
+ * sparse rows (children) and columns (parents):
+ * memory is O(V+E) and visits are O(degree).
+ * The graph is meant to be built first and then visited: new edges are
+ * kept in per node lists and merged in the compressed indices at the first
+ * visit after a modification (O(V+E) each time).
+ * INVARIANT : IDs of nodes are their position in V
+ *
+ * @author rossi
+ *
+ * @param <T>
+ */
+public class DirectedWeightedGraphSparse<T> implements WeightedGraph<T> {
+
+	ArrayList<Node<T>> V = new ArrayList<Node<T>>();
+
+	/**
+	 * CSR: the children of i are target[rowStart[i]], ..., target[rowStart[i+1]-1] (ascending order)
+	 */
+	private int[] rowStart = new int[]{0};
+	private int[] target = new int[0];
+	/**
+	 * weight[k] is the weight of the edge ending in target[k]
+	 */
+	private double[] weight = new double[0];
+	/**
+	 * CSC: the parents of j are source[colStart[j]], ..., source[colStart[j+1]-1] (ascending order)
+	 */
+	private int[] colStart = new int[]{0};
+	private int[] source = new int[0];
+	/**
+	 * number of nodes covered by the compressed indices
+	 */
+	private int compressedNodes = 0;
+
+	/**
+	 * edges added after the last compression (for each source node, null if none)
+	 */
+	private int[][] pendingTargets = new int[0][];
+	private double[][] pendingWeights = new double[0][];
+	private int[] pendingCount = new int[0];
+	private int numberOfPending = 0;
+
+	public DirectedWeightedGraphSparse(){
+		super();
+	}
+
+	@Override
+	public int getNumberOfNodes() {
+		return V.size();
+	}
+
+	@Override
+	public List<Node<T>> getAdjacencyList(Node<T> current) throws InvalidNodeException {
+		return adj(current);
+	}
+
+	@Override
+	public List<Node<T>> getNodes() {
+		return V;
+	}
+
+	@Override
+	public Node<T> add(T content) {
+		Node<T> newNode = new SimpleNode<T>(V.size(), content);
+		V.add(newNode);
+		return newNode;
+	}
+
+	@Override
+	public void link(Node<T> a, Node<T> b) throws AlreadyLinkedException {
+		link(a, b, 0.);
+	}
+
+	@Override
+	public void link(Node<T> a, Node<T> b, double weight) throws AlreadyLinkedException {
+		int i = a.getId();
+		int j = b.getId();
+		if(findCompressed(i, j) != -1 || findPending(i, j) != -1){
+			throw new AlreadyLinkedException(i, j);
+		}
+		if(i >= pendingCount.length){
+			int newLength = Math.max(V.size(), pendingCount.length + (pendingCount.length >> 1));
+			pendingTargets = Arrays.copyOf(pendingTargets, newLength);
+			pendingWeights = Arrays.copyOf(pendingWeights, newLength);
+			pendingCount = Arrays.copyOf(pendingCount, newLength);
+		}
+		if(pendingTargets[i] == null){
+			pendingTargets[i] = new int[4];
+			pendingWeights[i] = new double[4];
+		}else if(pendingCount[i] == pendingTargets[i].length){
+			pendingTargets[i] = Arrays.copyOf(pendingTargets[i], 2*pendingCount[i]);
+			pendingWeights[i] = Arrays.copyOf(pendingWeights[i], 2*pendingCount[i]);
+		}
+		pendingTargets[i][pendingCount[i]] = j;
+		pendingWeights[i][pendingCount[i]] = weight;
+		pendingCount[i]++;
+		numberOfPending++;
+	}
+
+	/**
+	 * Removes an edge from a to b (O(V+E))
+	 */
+	@Override
+	public void unlink(Node<T> a, Node<T> b) throws NoEdgeFoundException {
+		compress();
+		int k = findCompressed(a.getId(), b.getId());
+		if(k == -1){
+			throw new NoEdgeFoundException(a.getId(), b.getId());
+		}
+		System.arraycopy(target, k+1, target, k, target.length-k-1);
+		System.arraycopy(weight, k+1, weight, k, weight.length-k-1);
+		target = Arrays.copyOf(target, target.length-1);
+		weight = Arrays.copyOf(weight, weight.length-1);
+		for(int i = a.getId()+1; i<rowStart.length; i++){
+			rowStart[i]--;
+		}
+		buildColumns();
+	}
+
+	@Override
+	public void setWeight(Node<T> a, Node<T> b, double weight) throws NoEdgeFoundException {
+		int i = a.getId();
+		int j = b.getId();
+		int k = findCompressed(i, j);
+		if(k != -1){
+			this.weight[k] = weight;
+			return;
+		}
+		k = findPending(i, j);
+		if(k == -1){
+			throw new NoEdgeFoundException(i, j);
+		}
+		pendingWeights[i][k] = weight;
+	}
+
+	@Override
+	public double getWeight(Node<T> a, Node<T> b) {
+		int i = a.getId();
+		int j = b.getId();
+		int k = findCompressed(i, j);
+		if(k != -1){
+			return weight[k];
+		}
+		k = findPending(i, j);
+		return k == -1 ? 0. : pendingWeights[i][k];
+	}
+
+	/**
+	 * @param i source
+	 * @param j destination
+	 * @return position of the edge in target/weight, -1 if it is not in the compressed indices
+	 */
+	private int findCompressed(int i, int j){
+		if(i >= compressedNodes) return -1;
+		int k = Arrays.binarySearch(target, rowStart[i], rowStart[i+1], j);
+		return k < 0 ? -1 : k;
+	}
+
+	/**
+	 * @param i source
+	 * @param j destination
+	 * @return position of the edge in pendingTargets[i], -1 if it is not pending
+	 */
+	private int findPending(int i, int j){
+		if(i >= pendingCount.length) return -1;
+		for(int k = 0; k<pendingCount[i]; k++){
+			if(pendingTargets[i][k] == j) return k;
+		}
+		return -1;
+	}
+
+	/**
+	 * Merges the pending edges and the new nodes in the compressed indices
+	 */
+	private void compress(){
+		if(numberOfPending == 0 && compressedNodes == V.size()) return;
+		int n = V.size();
+		int m = target.length + numberOfPending;
+		/* sort all the edges by source and then by target (two stable counting sorts) */
+		int[] from = new int[m];
+		int[] to = new int[m];
+		double[] w = new double[m];
+		int e = 0;
+		for(int i = 0; i<n; i++){
+			if(i < compressedNodes){
+				for(int k = rowStart[i]; k<rowStart[i+1]; k++, e++){
+					from[e] = i;
+					to[e] = target[k];
+					w[e] = weight[k];
+				}
+			}
+			if(i < pendingCount.length){
+				for(int k = 0; k<pendingCount[i]; k++, e++){
+					from[e] = i;
+					to[e] = pendingTargets[i][k];
+					w[e] = pendingWeights[i][k];
+				}
+			}
+		}
+		int[] byTarget = countingSort(to, null, n);
+		int[] order = countingSort(from, byTarget, n);
+		rowStart = new int[n+1];
+		target = new int[m];
+		weight = new double[m];
+		for(int k = 0; k<m; k++){
+			rowStart[from[order[k]]+1]++;
+			target[k] = to[order[k]];
+			weight[k] = w[order[k]];
+		}
+		for(int i = 0; i<n; i++){
+			rowStart[i+1] += rowStart[i];
+		}
+		compressedNodes = n;
+		pendingTargets = new int[0][];
+		pendingWeights = new double[0][];
+		pendingCount = new int[0];
+		numberOfPending = 0;
+		buildColumns();
+	}
+
+	/**
+	 * Stable counting sort
+	 * @param keys   keys in [0, n)
+	 * @param input  positions to be sorted (null: 0, 1, ..., keys.length-1)
+	 * @param n      number of possible keys
+	 * @return the positions sorted by key
+	 */
+	private static int[] countingSort(int[] keys, int[] input, int n){
+		int[] start = new int[n+1];
+		for(int key : keys){
+			start[key+1]++;
+		}
+		for(int i = 0; i<n; i++){
+			start[i+1] += start[i];
+		}
+		int[] ret = new int[keys.length];
+		for(int k = 0; k<keys.length; k++){
+			int pos = input == null ? k : input[k];
+			ret[start[keys[pos]]++] = pos;
+		}
+		return ret;
+	}
+
+	/**
+	 * Builds the compressed columns from the compressed rows
+	 */
+	private void buildColumns(){
+		int n = compressedNodes;
+		colStart = new int[n+1];
+		for(int t : target){
+			colStart[t+1]++;
+		}
+		for(int j = 0; j<n; j++){
+			colStart[j+1] += colStart[j];
+		}
+		source = new int[target.length];
+		int[] next = Arrays.copyOf(colStart, n);
+		for(int i = 0; i<n; i++){
+			for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+				source[next[target[k]]++] = i;
+			}
+		}
+	}
+
+	/**
+	 * @param position
+	 * @return the adjacency list of position O(children)
+	 */
+	@Override
+	public ArrayList<Node<T>> adj(Node<T> position){
+		compress();
+		int i = position.getId();
+		ArrayList<Node<T>> ret = new ArrayList<Node<T>>(rowStart[i+1] - rowStart[i]);
+		for(int k = rowStart[i]; k<rowStart[i+1]; k++){
+			ret.add(V.get(target[k]));
+		}
+		return ret;
+	}
+
+	/**
+	 * @param position
+	 * @return the list of parents of position O(parents)
+	 */
+	@Override
+	public ArrayList<Node<T>> par(Node<T> position){
+		compress();
+		int j = position.getId();
+		ArrayList<Node<T>> ret = new ArrayList<Node<T>>(colStart[j+1] - colStart[j]);
+		for(int k = colStart[j]; k<colStart[j+1]; k++){
+			ret.add(V.get(source[k]));
+		}
+		return ret;
+	}
+
+	@Override
+	public int getNumberOfParents(Node<T> position){
+		compress();
+		return colStart[position.getId()+1] - colStart[position.getId()];
+	}
+
+	@Override
+	public int getNumberOfChildren(Node<T> position){
+		compress();
+		return rowStart[position.getId()+1] - rowStart[position.getId()];
+	}
+
+	/**
+	 * @return number of edges of this graph
+	 */
+	public int getNumberOfEdges(){
+		return target.length + numberOfPending;
+	}
+
+	@Override
+	public void toDot(PrintStream out) {
+		compress();
+		out.println("digraph g{");
+		for(Node<T> v: V){
+			v.toDot(out);
+		}
+		for(int i=0; i<compressedNodes; i++){
+			for (int k = rowStart[i]; k < rowStart[i+1]; k++) {
+				out.println(i + " -> " + target[k] + "[label=\"" + String.format("%.3f", weight[k]) + "\"]");
+			}
+		}
+		out.println("}");
+	}
+
+}
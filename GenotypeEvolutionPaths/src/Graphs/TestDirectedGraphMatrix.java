@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 
 import org.junit.Test;
 
+import Utils.DoubleSquareMatrix;
+
 public class TestDirectedGraphMatrix {
 
 	@Test
@@ -63,6 +65,195 @@ public class TestDirectedGraphMatrix {
 		tst.toDot(System.out);
 		
 	}
-	
+
+	@Test
+	public void testWeights() {
+		
+		DirectedWeightedGraphMatrix<String> tst = new DirectedWeightedGraphMatrix<String>();
+		
+		Node<String> root = tst.add("clonal");
+		Node<String> a = tst.add("A");
+		Node<String> b = tst.add("B");
+		Node<String> ab = tst.add("AB");
+		
+		tst.link(root, a, 0.25);
+		tst.link(root, b, 0.75);
+		tst.link(a, ab, 1.);
+		tst.link(b, ab, 1.);
+		
+		assertEquals(4, tst.getSize());
+		assertEquals(0.75, tst.getWeight(root, b), 0.);
+		assertEquals(0., tst.getWeight(a, b), 0.);
+		
+		/* the returned matrix is a copy */
+		DoubleSquareMatrix W = tst.getMatrix();
+		W.set(0, 1, 0.5);
+		assertEquals(0.25, tst.getWeight(root, a), 0.);
+		assertEquals(1.25, W.sumRow(0), 0.);
+		assertEquals(2., W.sumColumn(3), 0.);
+		assertArrayEquals(new double[]{0., 0.5, 0.75, 0.}, W.getRow(0), 0.);
+		assertArrayEquals(new double[]{0.5, 0., 0., 0.}, W.getColumn(1), 0.);
+		
+		/* one step from the root */
+		assertArrayEquals(new double[]{0., 0.25, 0.75, 0.}, tst.getMatrix().vecProduct(new double[]{1., 0., 0., 0.}), 0.);
+		/* two steps from the root */
+		DoubleSquareMatrix W2 = tst.getMatrix().multiply(tst.getMatrix());
+		assertArrayEquals(new double[]{0., 0., 0., 1.}, W2.getRow(0), 0.);
+		
+		/* growth keeps the content */
+		Node<String> abc = tst.add("ABC");
+		tst.link(ab, abc, 1.);
+		assertEquals(0.75, tst.getWeight(root, b), 0.);
+		assertEquals(1., tst.getWeight(ab, abc), 0.);
+		assertEquals(5, tst.getMatrix().getSize());
+		
+	}
+
+	@Test
+	public void testAdjacency() {
+		
+		DirectedGraphMatrix<Integer> tst = new DirectedGraphMatrix<Integer>();
+		
+		/* more than one word per row */
+		for(int i = 0; i<200; i++){
+			tst.add(i);
+		}
+		Node<Integer> root = tst.getNodes().get(0);
+		for(int i = 1; i<199; i+=3){
+			tst.link(root, tst.getNodes().get(i));
+			tst.link(tst.getNodes().get(i), tst.getNodes().get(199));
+		}
+		tst.unlink(root, tst.getNodes().get(64));
+		
+		assertEquals(65, tst.adj(root).size());
+		assertEquals(65, tst.getNumberOfChildren(root));
+		assertEquals(1, tst.adj(root).get(0).getContent().intValue());
+		assertEquals(67, tst.adj(root).get(21).getContent().intValue());
+		assertEquals(0, tst.par(tst.getNodes().get(64)).size());
+		assertEquals(1, tst.par(tst.getNodes().get(67)).size());
+		assertEquals(66, tst.par(tst.getNodes().get(199)).size());
+		assertEquals(196, tst.par(tst.getNodes().get(199)).get(65).getContent().intValue());
+		
+		/* growth keeps the edges */
+		Node<Integer> last = tst.add(200);
+		tst.link(tst.getNodes().get(199), last);
+		assertEquals(66, tst.par(tst.getNodes().get(199)).size());
+		assertEquals(199, tst.par(last).get(0).getContent().intValue());
+		assertEquals(65, tst.getAdjacencyList(root).size());
+		
+	}
+
+	/**
+	 * builds the same random DAG in g
+	 */
+	private static void randomDAG(WeightedGraph<Integer> g, long seed){
+		java.util.Random rnd = new java.util.Random(seed);
+		for(int i = 0; i<150; i++){
+			g.add(i);
+		}
+		for(int i = 149; i>0; i--){
+			for(int k = 0; k<3; k++){
+				Node<Integer> parent = g.getNodes().get(rnd.nextInt(i));
+				if(g.getWeight(parent, g.getNodes().get(i)) == 0.){
+					g.link(parent, g.getNodes().get(i), 1 + rnd.nextInt(9));
+				}
+			}
+			if(i % 50 == 0){ /* visits during the construction */
+				g.adj(g.getNodes().get(0));
+			}
+		}
+	}
+
+	@Test
+	public void testSparse() {
+		
+		DirectedWeightedGraphMatrix<Integer> dense = new DirectedWeightedGraphMatrix<Integer>();
+		DirectedWeightedGraphSparse<Integer> sparse = new DirectedWeightedGraphSparse<Integer>();
+		randomDAG(dense, 42);
+		randomDAG(sparse, 42);
+		
+		for(int i = 0; i<150; i++){
+			Node<Integer> d = dense.getNodes().get(i);
+			Node<Integer> s = sparse.getNodes().get(i);
+			assertEquals(dense.getNumberOfChildren(d), sparse.getNumberOfChildren(s));
+			assertEquals(dense.getNumberOfParents(d), sparse.getNumberOfParents(s));
+			for(int k = 0; k<dense.adj(d).size(); k++){
+				Node<Integer> child = dense.adj(d).get(k);
+				assertEquals(child.getId(), sparse.adj(s).get(k).getId());
+				assertEquals(dense.getWeight(d, child), sparse.getWeight(s, sparse.getNodes().get(child.getId())), 0.);
+			}
+			for(int k = 0; k<dense.par(d).size(); k++){
+				assertEquals(dense.par(d).get(k).getId(), sparse.par(s).get(k).getId());
+			}
+		}
+		
+		/* modifications after the first visits */
+		Node<Integer> a = sparse.getNodes().get(0);
+		Node<Integer> b = sparse.adj(a).get(0);
+		sparse.unlink(a, b);
+		dense.unlink(dense.getNodes().get(0), dense.getNodes().get(b.getId()));
+		sparse.setWeight(sparse.getNodes().get(10), sparse.adj(sparse.getNodes().get(10)).get(0), 0.5);
+		dense.setWeight(dense.getNodes().get(10), dense.adj(dense.getNodes().get(10)).get(0), 0.5);
+		
+		java.io.ByteArrayOutputStream d = new java.io.ByteArrayOutputStream();
+		java.io.ByteArrayOutputStream s = new java.io.ByteArrayOutputStream();
+		dense.toDot(new java.io.PrintStream(d));
+		sparse.toDot(new java.io.PrintStream(s));
+		assertEquals(d.toString(), s.toString());
+		
+		try{
+			sparse.link(sparse.getNodes().get(10), sparse.adj(sparse.getNodes().get(10)).get(0));
+			fail("duplicated edge");
+		}catch(AlreadyLinkedException e){
+			/* expected */
+		}
+		try{
+			sparse.unlink(a, b);
+			fail("missing edge");
+		}catch(NoEdgeFoundException e){
+			/* expected */
+		}
+		
+	}
+
+	@Test
+	public void testMultiply() {
+		
+		/* more than one tile per side, some tiles are zeros */
+		java.util.Random rnd = new java.util.Random(3);
+		int n = 150;
+		DoubleSquareMatrix a = new DoubleSquareMatrix();
+		a.enlarge(n);
+		DoubleSquareMatrix b = new DoubleSquareMatrix(n);
+		Utils.SquareMatrix<Double> boxedA = new Utils.SquareMatrix<Double>(0.);
+		boxedA.enlarge(n);
+		for(int i = 0; i<n; i++){
+			for(int j = 0; j<n; j++){
+				if(j >= i && rnd.nextInt(4) == 0){
+					a.set(i, j, rnd.nextDouble());
+					boxedA.set(i, j, a.get(i, j));
+				}
+				b.set(i, j, rnd.nextDouble());
+			}
+		}
+		DoubleSquareMatrix product = a.multiply(b);
+		for(int i = 0; i<n; i++){
+			for(int j = 0; j<n; j++){
+				double cell = 0.;
+				for(int k = 0; k<n; k++){
+					cell += a.get(i, k)*b.get(k, j);
+				}
+				assertEquals(cell, product.get(i, j), 0.);
+			}
+		}
+		
+		/* boxed matrices use the same product */
+		DoubleSquareMatrix square = boxedA.multiply(boxedA).toDoubleSquareMatrix();
+		DoubleSquareMatrix expected = a.multiply(a);
+		for(int i = 0; i<n; i++){
+			assertArrayEquals(expected.getRow(i), square.getRow(i), 0.);
+		}
+		
+	}
 	
 }
@@ -0,0 +1,64 @@
+package Graphs;
+
+import java.util.ArrayList;
+
+/**
+ * Directed graphs with weighted edges, with the visits needed
+ * to compute weights on DAGs (children and parents of a node)
+ *
+ * @author rossi
+ *
+ * @param <T>
+ */
+public interface WeightedGraph <T> extends Graph<T>{
+
+	/**
+	 * creates an edge from a to b with weight 'weight'
+	 * @param a
+	 * @param b
+	 * @param weight
+	 * @throws AlreadyLinkedException if a and b were already linked
+	 */
+	public void link(Node<T> a, Node<T> b, double weight) throws AlreadyLinkedException;
+
+	/**
+	 * Set weight of edge from a to b
+	 * @param a
+	 * @param b
+	 * @param weight
+	 * @throws NoEdgeFoundException when a and b are not linked
+	 */
+	public void setWeight(Node<T> a, Node<T> b, double weight) throws NoEdgeFoundException;
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return weight of edge from a to b (0 if they are not linked)
+	 */
+	public double getWeight(Node<T> a, Node<T> b);
+
+	/**
+	 * @param position
+	 * @return the children of position (ascending order by id)
+	 */
+	public ArrayList<Node<T>> adj(Node<T> position);
+
+	/**
+	 * @param position
+	 * @return the parents of position (ascending order by id)
+	 */
+	public ArrayList<Node<T>> par(Node<T> position);
+
+	/**
+	 * @param position
+	 * @return the number of parents of position
+	 */
+	public int getNumberOfParents(Node<T> position);
+
+	/**
+	 * @param position
+	 * @return the number of children of position
+	 */
+	public int getNumberOfChildren(Node<T> position);
+
+}
@@ -3,8 +3,10 @@ package Main;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 
 import Datasets.Dataset;
+import Datasets.ReaderMode;
 import GenotypeGraphsv2.GenotypeGraphAllowingMultipleMutations;
 
 /**
@@ -19,9 +21,17 @@ public class CommandLineInterface {
 		String input = null;
 		String output = null;
 		boolean capri = false;
+		boolean sparse = false;
 		int shrink = 0;
 		boolean printSamples = true;
 		boolean printGenotypes = true;
+		ReaderMode reader = null;
+		ArrayList<String> binaryInputs = new ArrayList<String>();
+		String binaryOutput = null;
+		boolean streamShrink = false;
+		boolean collapseGenes = false;
+		int minSupport = 0;
+		boolean sparseGraph = false;
 		
 		/*--- Read arguments ---*/
 		
@@ -38,6 +48,14 @@ public class CommandLineInterface {
 				System.out.println("-i in, --input in: set in as input file, by default input is read from STDIN");
 				System.out.println("-o out, --output out: set out as output file, by default output is written on STDOUT");
 				System.out.println("-c, --capri use CAPRI format for input (default BML format)");
+				System.out.println("--sparse use sparse format for input (a 'sample gene' line for each mutation)");
+				System.out.println("-r mode, --reader mode : input reader, one of: scanner (default), stream (byte level tokenizer), mapped (memory mapped file), parallel (multi-threaded, CAPRI only)");
+				System.out.println("-b in, --binary in : read the compacted data set from binary file in (instead of -i), if repeated the data sets are merged");
+				System.out.println("--save-binary out : save the compacted data set (before shrinking) in binary format in file out");
+				System.out.println("--stream-shrink : with -s and -i, read the input file twice keeping in memory only the selected genes (--save-binary saves the shrunk data set); distinct rows are counted by a 128 bit fingerprint (a collision, very unlikely, merges two rows) and memory still grows with the number of distinct rows");
+				System.out.println("--collapse-genes : merge the genes with identical mutation profiles (before shrinking) in a single gene");
+				System.out.println("--min-support n : fold the genotypes observed less than n times into their closest observed subset (before building the graph)");
+				System.out.println("--sparse-graph : use a sparse graph representation (less memory with many distinct genotypes, same output)");
 				System.out.println("--no-genotypes, do not print extended genotypes");
 				System.out.println("--no-samples, do not print samples names");
 				return;
@@ -99,6 +117,67 @@ public class CommandLineInterface {
 				}
 			}else if(args[i].equals("-c") || args[i].equals("--capri")){
 				capri = true;
+			}else if(args[i].equals("--sparse")){
+				sparse = true;
+			}else if(args[i].equals("-r") || args[i].equals("--reader")){
+				i++;
+				if(reader == null){
+					reader = i<args.length ? ReaderMode.fromName(args[i]) : null;
+					if(reader == null){
+						System.out.println("Error, invalid reader mode");
+						System.out.println("use -h or --help for more information");
+						return;
+					}
+				}else{
+					System.out.println("Error, reader set multiple times");
+					System.out.println("use -h or --help for more information");
+					return;
+				}
+			}else if(args[i].equals("-b") || args[i].equals("--binary")){
+				i++;
+				if (i >= args.length || !new File(args[i]).isFile()) {
+					System.out.println("Error, can not open binary input file");
+					System.out.println("use -h or --help for more information");
+					return;
+				}
+				binaryInputs.add(args[i]);
+			}else if(args[i].equals("--save-binary")){
+				i++;
+				if(binaryOutput == null){
+					if (i >= args.length) {
+						System.out.println("Error, missing binary output file");
+						System.out.println("use -h or --help for more information");
+						return;
+					}
+					binaryOutput = args[i];
+					if (new File(binaryOutput).isDirectory()) {
+						System.out.println("Error, can not open binary output file: FILE IS A DIRECTORY");
+						System.out.println("use -h or --help for more information");
+						return;
+					}
+				}else{
+					System.out.println("Error, binary output file set multiple times");
+					System.out.println("use -h or --help for more information");
+					return;
+				}
+			}else if(args[i].equals("--stream-shrink")){
+				streamShrink = true;
+			}else if(args[i].equals("--collapse-genes")){
+				collapseGenes = true;
+			}else if(args[i].equals("--min-support")){
+				i++;
+				try {
+					minSupport = Integer.parseInt(args[i]);
+				} catch (Exception e) {
+					minSupport = -1;
+				}
+				if (minSupport <= 0) {
+					System.out.println("Error, minimum support n must be a positive number");
+					System.out.println("use -h or --help for more information");
+					return;
+				}
+			}else if(args[i].equals("--sparse-graph")){
+				sparseGraph = true;
 			}else if(args[i].equals("--no-genotypes")){
 				printGenotypes = false;
 			}else if(args[i].equals("--no-samples")){
@@ -110,6 +189,24 @@ public class CommandLineInterface {
 			}
 		}
 		
+		if(capri && sparse){
+			System.out.println("Error, use either -c or --sparse");
+			System.out.println("use -h or --help for more information");
+			return;
+		}
+		
+		if(input != null && !binaryInputs.isEmpty()){
+			System.out.println("Error, use either -i or -b");
+			System.out.println("use -h or --help for more information");
+			return;
+		}
+		
+		if(streamShrink && (shrink == 0 || input == null || sparse)){
+			System.out.println("Error, --stream-shrink requires -s and an input file in BML or CAPRI format");
+			System.out.println("use -h or --help for more information");
+			return;
+		}
+		
 		if(input == null){
 			input = "STDIN";
 		}
@@ -118,29 +215,59 @@ public class CommandLineInterface {
 			output = "STDOUT";
 		}
 		
+		if(reader == null){
+			reader = ReaderMode.SCANNER;
+		}
+		
 		/*-- read --*/
 		
 		Dataset D = new Dataset();
-		if(input.toUpperCase() == "STDIN" && !capri){
-			D.read();
+		if(binaryInputs.size() > 1){
+			Dataset[] shards = new Dataset[binaryInputs.size()];
+			for(int i = 0; i<shards.length; i++){
+				shards[i] = new Dataset();
+				shards[i].load(binaryInputs.get(i));
+			}
+			D = Dataset.merge(shards);
+		}else if(!binaryInputs.isEmpty()){
+			D.load(binaryInputs.get(0));
+		}else if(streamShrink && !capri){
+			D.readShrunk(input, shrink);
+		}else if(streamShrink){
+			D.readCAPRIShrunk(input, shrink);
+		}else if(sparse && input.toUpperCase() == "STDIN"){
+			D.readSparse();
+		}else if(sparse){
+			D.readSparse(input);
+		}else if(input.toUpperCase() == "STDIN" && !capri){
+			D.read(reader);
 		}else if(!capri){
-			D.read(input);
+			D.read(input, reader);
 		}else if(input.toUpperCase() == "STDIN"){
-			D.readCAPRI();
+			D.readCAPRI(reader);
 		}else{
-			D.readCAPRI(input);
+			D.readCAPRI(input, reader);
+		}
+		if(binaryInputs.isEmpty() && !streamShrink){
+			D.compact();
+		}
+		if(binaryOutput != null){
+			D.save(binaryOutput);
+		}
+		if(collapseGenes){
+			D.collapseEquivalentGenes();
 		}
-		D.compact();
 		
 		/*-- execute --*/
 		
 		GenotypeGraphAllowingMultipleMutations grp;
-		if(shrink == 0){
-			grp = new GenotypeGraphAllowingMultipleMutations(D, printGenotypes, printSamples);
-		}else{
+		if(shrink != 0 && !streamShrink){
 			D.shrink(shrink);
-			grp = new GenotypeGraphAllowingMultipleMutations(D, printGenotypes, printSamples);
 		}
+		if(minSupport > 1){
+			D.foldRareGenotypes(minSupport);
+		}
+		grp = new GenotypeGraphAllowingMultipleMutations(D, printGenotypes, printSamples, sparseGraph);
 		
 		/*-- output --*/
 		
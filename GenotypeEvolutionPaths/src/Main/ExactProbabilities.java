@@ -7,6 +7,8 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 
 import DatasetGeneratorsv2.GraphDatasetGeneratorAllowingMultipleMutations;
+import DatasetGeneratorsv2.LongRunDistribution;
+import DatasetGeneratorsv2.TransitionMatrix;
 
 public class ExactProbabilities {
 	
@@ -17,36 +19,43 @@ public class ExactProbabilities {
 	 * @param probs  list of probabilities
 	 * @param names  list of genotypes
 	 */
-	private static void printer(PrintStream out, int k, ArrayList<Double> probs, ArrayList<String> names){
+	private static void printer(PrintStream out, int k, double[] probs, ArrayList<String> names){
 		out.println("> "+k);
 		for(int i=0; i<names.size(); i++){
-			out.println(names.get(i) + " " + probs.get(i));
+			out.println(names.get(i) + " " + probs[i]);
 		}
 	}
 	
+	/**
+	 * Prints the exact distribution of the first 100 steps.
+	 * Usage: ExactProbabilities [tolerance]
+	 * with a tolerance, stops once the L1 change of a step is below it
+	 * (the summary of the evolution is printed on stderr)
+	 * @param args
+	 * @throws FileNotFoundException
+	 */
 	public static void main(String[] args) throws FileNotFoundException{
 		/* output path */
 		String path = "/home/redsnic/Scrivania/Test_ripetizioni/testEvoluzione111.txt";
 		PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(path)), true);
 		/* prepare generator */
 		GraphDatasetGeneratorAllowingMultipleMutations gen = Main.SimulationsFromKnownGenerator.simpleGenerator();
-		/* probabilities */
-		ArrayList<Double> vect = new ArrayList<Double>();
-		/* at step 0 each cell is in the empty genotype (healty) state*/
-		vect.add(1.);
-		/* each other state has zero  probability */
-		for(int i  = 0; i<gen.getSize(); i++){
-			vect.add(0.);
-		}
+		/* at step 0 each cell is in the empty genotype (healty) state,
+		 * each other state has zero  probability */
+		double[] vect = gen.getInitialDistribution();
 		/* get genotypes labels */ 
 		ArrayList<String> names = gen.getNames();
 		/* print initial state */
 		printer(out, 0, vect, names);
-		/* start exact probabilities evolution computation */
+		/* start exact probabilities evolution computation (each step is printed as soon as it is computed) */
 		int numberOfSteps = 100;
-		for(int j = 0; j<numberOfSteps; j++){
-			vect = gen.computeNextStepProbabilities(vect);
-			printer(out, j, vect, names);
-		}
+		boolean stopWhenSettled = args.length > 0;
+		double tolerance = stopWhenSettled ? Double.parseDouble(args[0]) : 1e-12;
+		TransitionMatrix transitions = gen.getTransitionMatrix();
+		LongRunDistribution evolution = transitions.evolve(vect, numberOfSteps, stopWhenSettled ? tolerance : 0., 
+				(step, probs) -> printer(out, step, probs, names));
+		out.close();
+		System.err.println("Evolution: " + evolution);
+		System.err.println("Long run: " + gen.getLongRunDistribution(tolerance, numberOfSteps));
 	}
 }
@@ -0,0 +1,156 @@
+package Main;
+
+import java.util.Random;
+
+import Utils.Kernels;
+import Utils.Utils;
+
+/**
+ * Compares the kernels of Utils.Kernels with simple loops on the same data layout
+ * (packed genotypes, rows of a matrix added to a vector as in DoubleSquareMatrix.vecProduct),
+ * genotype operations are measured on boolean arrays too (the layout before packing).
+ * The instruction set used by the JIT can be chosen with -XX:UseAVX=2 (AVX2) or -XX:UseAVX=3 (AVX-512).
+ * Usage: KernelBenchmark [numberOfGenes] [vectorLength]
+ *
+ * @author rossi
+ */
+public class KernelBenchmark {
+
+	private static final int ROUNDS = 10;
+	private static final int PAIRS = 1024;
+
+	/**
+	 * prevents the JIT from removing the measured code
+	 */
+	private static long sink = 0;
+
+	private interface Body {
+		long run();
+	}
+
+	/**
+	 * @param operations number of operations done by each call of body
+	 * @param body
+	 * @return best time in ns per operation
+	 */
+	private static double measure(long operations, Body body){
+		double best = Double.MAX_VALUE;
+		for(int r = 0; r<ROUNDS; r++){
+			long start = System.nanoTime();
+			sink += body.run();
+			best = Math.min(best, (double) (System.nanoTime() - start)/operations);
+		}
+		return best;
+	}
+
+	private static void report(String name, double bool, double simple, double kernel){
+		System.out.println(String.format("%-20s boolean[]: %8s ns   simple loop: %8.2f ns   kernel: %8.2f ns   kernel speedup: %5.1fx", 
+				name, Double.isNaN(bool) ? "-" : String.format("%.2f", bool), simple, kernel, simple/kernel));
+	}
+
+	public static void main(String[] args) {
+		int genes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int length = args.length > 1 ? Integer.parseInt(args[1]) : 4096;
+		Random rnd = new Random(42);
+
+		/* genotypes */
+		boolean[][] plain = new boolean[PAIRS][genes];
+		long[][] packed = new long[PAIRS][];
+		for(int i = 0; i<PAIRS; i++){
+			for(int j = 0; j<genes; j++){
+				/* half of the pairs are subsets */
+				plain[i][j] = i%2 == 1 && plain[i-1][j] ? true : rnd.nextInt(4) == 0;
+			}
+			packed[i] = Utils.pack(plain[i]);
+		}
+		/* ROWS rows of a matrix (one after the other) and a vector */
+		final int ROWS = 8;
+		double[] matrix = new double[ROWS*length];
+		double[] y = new double[length];
+		for(int i = 0; i<matrix.length; i++){
+			matrix[i] = rnd.nextDouble();
+		}
+
+		System.out.println("genes: " + genes + ", vector length: " + length);
+		for(int warmUp = 0; warmUp<3; warmUp++){
+			boolean print = warmUp == 2;
+			double bool, simple, kernel;
+
+			bool = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 0; i<PAIRS; i++) s += Utils.sumBool(plain[i]);
+				return s;
+			});
+			simple = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 0; i<PAIRS; i++){
+					long[] a = packed[i];
+					for(int w = 0; w<a.length; w++) s += Long.bitCount(a[w]);
+				}
+				return s;
+			});
+			kernel = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 0; i<PAIRS; i++) s += Kernels.popCount(packed[i]);
+				return s;
+			});
+			if(print) report("mutations count", bool, simple, kernel);
+
+			bool = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++) s += Utils.hammingDistance(plain[i-1], plain[i]);
+				return s;
+			});
+			simple = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++){
+					long[] a = packed[i-1], b = packed[i];
+					for(int w = 0; w<a.length; w++) s += Long.bitCount(a[w] ^ b[w]);
+				}
+				return s;
+			});
+			kernel = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++) s += Kernels.hammingDistance(packed[i-1], packed[i]);
+				return s;
+			});
+			if(print) report("hamming distance", bool, simple, kernel);
+
+			bool = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++) s += Utils.isSubseteq(plain[i-1], plain[i]) ? 1 : 0;
+				return s;
+			});
+			simple = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++){
+					long[] a = packed[i-1], b = packed[i];
+					boolean subset = true;
+					for(int w = 0; w<a.length && subset; w++) subset = (a[w] & ~b[w]) == 0;
+					s += subset ? 1 : 0;
+				}
+				return s;
+			});
+			kernel = measure(PAIRS*10L, () -> {
+				long s = 0;
+				for(int t = 0; t<10; t++) for(int i = 1; i<PAIRS; i++) s += Kernels.isSubseteq(packed[i-1], packed[i]) ? 1 : 0;
+				return s;
+			});
+			if(print) report("subset test", bool, simple, kernel);
+
+			simple = measure(ROWS*length*100L, () -> {
+				for(int t = 0; t<100; t++) for(int k = 0; k<ROWS; k++){
+					for(int i = 0; i<length; i++) y[i] += 1e-3*matrix[k*length + i];
+				}
+				return (long) y[0];
+			});
+			kernel = measure(ROWS*length*100L, () -> {
+				for(int t = 0; t<100; t++) for(int k = 0; k<ROWS; k++) Kernels.axpy(1e-3, matrix, k*length, y, 0, length);
+				return (long) y[0];
+			});
+			if(print) report("axpy (per element)", Double.NaN, simple, kernel);
+		}
+		System.out.println("(" + sink + ")");
+	}
+
+}
@@ -0,0 +1,117 @@
+package Main;
+
+import java.util.Random;
+
+import Utils.DoubleSquareMatrix;
+import Utils.SquareMatrix;
+
+/**
+ * Compares the old boxed product of SquareMatrix (naive triple loop on Double)
+ * with the tiled parallel product of DoubleSquareMatrix on dense matrices
+ * and on sparse transition matrices (a few non zero cells per row on a DAG, as in the generators)
+ * Usage: MatrixMultiplyBenchmark [size ...] (default 100 200 400)
+ *
+ * @author rossi
+ */
+public class MatrixMultiplyBenchmark {
+
+	/**
+	 * boxed sizes larger than this are not measured (too slow)
+	 */
+	private static final int MAX_BOXED_SIZE = 400;
+	private static final int REPETITIONS = 3;
+
+	/**
+	 * the product as it was computed by SquareMatrix.multiply
+	 */
+	private static SquareMatrix<Double> boxedMultiply(SquareMatrix<Double> a, SquareMatrix<Double> b){
+		SquareMatrix<Double> out = new SquareMatrix<Double>(0.);
+		out.enlarge(a.getSize());
+		for(int i = 0; i< a.getSize(); i++){
+			for(int j=0; j<a.getSize(); j++){
+				Double cell = 0.;
+				for(int k = 0; k<a.getSize(); k++){
+					cell += a.get(i,k) * b.get(k, j);
+				}
+				out.set(i, j, cell);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * @param size
+	 * @param perRow number of non zero cells for each row (size for a dense matrix)
+	 * @param rnd
+	 * @return a random row stochastic matrix (upper triangular if sparse, as DAGs with self loops)
+	 */
+	private static DoubleSquareMatrix randomMatrix(int size, int perRow, Random rnd){
+		DoubleSquareMatrix m = new DoubleSquareMatrix(size);
+		for(int i = 0; i<size; i++){
+			for(int k = 0; k<perRow; k++){
+				m.set(i, perRow == size ? k : i + rnd.nextInt(size - i), rnd.nextDouble());
+			}
+			double norm = m.sumRow(i);
+			for(int j = 0; j<size; j++){
+				m.set(i, j, m.get(i, j)/norm);
+			}
+		}
+		return m;
+	}
+
+	private static SquareMatrix<Double> toBoxed(DoubleSquareMatrix m){
+		SquareMatrix<Double> out = new SquareMatrix<Double>(0.);
+		out.enlarge(m.getSize());
+		for(int i = 0; i<m.getSize(); i++){
+			for(int j = 0; j<m.getSize(); j++){
+				out.set(i, j, m.get(i, j));
+			}
+		}
+		return out;
+	}
+
+	private static void run(String name, DoubleSquareMatrix m){
+		int size = m.getSize();
+		long best = Long.MAX_VALUE;
+		DoubleSquareMatrix product = null;
+		for(int r = 0; r<REPETITIONS; r++){
+			long start = System.nanoTime();
+			product = m.multiply(m);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		String line = String.format("%-7s n=%-5d primitive: %9.2f ms", name, size, best/1e6);
+		if(size <= MAX_BOXED_SIZE){
+			SquareMatrix<Double> boxed = toBoxed(m);
+			long start = System.nanoTime();
+			SquareMatrix<Double> expected = boxedMultiply(boxed, boxed);
+			long time = System.nanoTime() - start;
+			double maxDiff = 0.;
+			for(int i = 0; i<size; i++){
+				for(int j = 0; j<size; j++){
+					maxDiff = Math.max(maxDiff, Math.abs(expected.get(i, j) - product.get(i, j)));
+				}
+			}
+			line += String.format("   boxed: %9.2f ms   speedup: %7.1fx   max difference: %g", time/1e6, (double) time/best, maxDiff);
+		}
+		System.out.println(line);
+	}
+
+	public static void main(String[] args) {
+		int[] sizes = new int[]{100, 200, 400};
+		if(args.length > 0){
+			sizes = new int[args.length];
+			for(int i = 0; i<args.length; i++){
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		Random rnd = new Random(42);
+		System.out.println("threads: " + Runtime.getRuntime().availableProcessors());
+		/* warm up */
+		randomMatrix(256, 256, rnd).multiply(randomMatrix(256, 256, rnd));
+		for(int size : sizes){
+			run("dense", randomMatrix(size, size, rnd));
+			run("sparse", randomMatrix(size, Math.min(size, 4), rnd));
+		}
+	}
+
+}
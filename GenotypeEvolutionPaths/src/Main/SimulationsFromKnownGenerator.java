@@ -8,6 +8,7 @@ import java.io.PrintStream;
 
 import DatasetGeneratorsv2.GenotypeGen;
 import DatasetGeneratorsv2.GraphDatasetGeneratorAllowingMultipleMutations;
+import DatasetGeneratorsv2.LongRunDistribution;
 import Datasets.Dataset;
 import GenotypeGraphsv2.GenotypeGraphAllowingMultipleMutations;
 import Graphs.Node;
@@ -363,7 +364,14 @@ public class SimulationsFromKnownGenerator {
 		return gen;
 	}
 	
-	/* simulation */
+	/**
+	 * Simulation of data sets with path lengths from 1 to 150.
+	 * Usage: SimulationsFromKnownGenerator [tolerance]
+	 * with a tolerance, longer paths are not simulated once the L1 change of a step
+	 * of the exact distribution is below it (e.g. 1e-4, the sampling error of the data sets)
+	 * @param args
+	 * @throws FileNotFoundException
+	 */
 	public static void main(String[] args) throws FileNotFoundException {
 		/* choose generator */
 		GraphDatasetGeneratorAllowingMultipleMutations gen = generator1();
@@ -383,6 +391,11 @@ public class SimulationsFromKnownGenerator {
 		/* simulation paths length */
 		int Kmin = 1;
 		int Kmax = 150;
+		if(args.length > 0){
+			LongRunDistribution settled = gen.getTransitionMatrix().evolve(gen.getInitialDistribution(), Kmax, Double.parseDouble(args[0]), null);
+			Kmax = settled.getSteps();
+			System.out.println("Exact distribution: " + settled);
+		}
 		/* number of simulatrions for dataset generation */
 		int accuracyMin = 1000000;
 		int accuracyMax = 1000000;
@@ -393,19 +406,17 @@ public class SimulationsFromKnownGenerator {
 			for (int i = accuracyMin; i <= accuracyMax; i *= 10) {
 				/* prepare output */
 				out = new PrintStream(new BufferedOutputStream(new FileOutputStream(path + "graph_"+i+"_"+j+".dot")), true);
-				PrintStream outDataset = new PrintStream(new BufferedOutputStream(new FileOutputStream(datasetPath + "dataset_"+i+"_"+j+".txt")), true);
 				System.out.println("Graph with " + i + " samples and path length " + j);
 				/* siulate */
 				Dataset data = gen.generate(i, j);
 				/* save dataset */
-				data.printTRONCOFormat(outDataset);
+				data.printTRONCOFormat(datasetPath + "dataset_"+i+"_"+j+".txt", false);
 				GenotypeGraphAllowingMultipleMutations grp = new GenotypeGraphAllowingMultipleMutations(data);
 				grp.toDot(out);
 				/* plot data output */
 				outPlot.println("> " + j); // header (indica k)
 				grp.plotData(outPlot);     // plot informations
 				out.close();
-				outDataset.close();
 			}
 		}
 		outPlot.close();
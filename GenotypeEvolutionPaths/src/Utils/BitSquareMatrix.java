@@ -0,0 +1,222 @@
+package Utils;
+
+/**
+ * Square matrix of booleans packed in bits (adjacency matrices):
+ * cell (i,j) is bit j%64 of word j/64 of row i, rows are stored one after
+ * the other in a single array.
+ * Optionally the transposed matrix is kept too, so that columns (parents)
+ * can be visited as fast as rows (children).
+ * New cells are initialized with false.
+ * @author rossi
+ *
+ */
+public class BitSquareMatrix {
+
+	/**
+	 * rows of the matrix ('words' words each)
+	 */
+	private long[] rows;
+	/**
+	 * rows of the transposed matrix (null if columns are not kept)
+	 */
+	private long[] columns;
+	/**
+	 * words per row (the matrix can reach size 64*words without reallocations)
+	 */
+	private int words;
+	private int size = 0;
+
+	/**
+	 * Default constructor (empty matrix, without transposed matrix)
+	 */
+	public BitSquareMatrix(){
+		this(0, false);
+	}
+
+	/**
+	 * Creates a matrix of size x size false cells
+	 * @param size          length of a side of the matrix
+	 * @param keepColumns   true to keep also the transposed matrix (faster column visits, double memory)
+	 */
+	public BitSquareMatrix(int size, boolean keepColumns){
+		this.words = (size + 63) >>> 6;
+		this.rows = new long[(words << 6)*words];
+		this.columns = keepColumns ? new long[rows.length] : null;
+		this.size = size;
+	}
+
+	/**
+	 * Reserves space so that the matrix can reach the given size without
+	 * further reallocations
+	 * @param minCapacity
+	 */
+	public void ensureCapacity(int minCapacity){
+		if(minCapacity <= words << 6) return;
+		int newWords = Math.max((minCapacity + 63) >>> 6, words + (words >> 1));
+		rows = grow(rows, newWords);
+		if(columns != null){
+			columns = grow(columns, newWords);
+		}
+		words = newWords;
+	}
+
+	/**
+	 * @param bits     rows to be copied
+	 * @param newWords new words per row
+	 * @return the rows in an array with newWords words per row
+	 */
+	private long[] grow(long[] bits, int newWords){
+		long[] ret = new long[(newWords << 6)*newWords];
+		for(int i = 0; i<size; i++){
+			System.arraycopy(bits, i*words, ret, i*newWords, words);
+		}
+		return ret;
+	}
+
+	/**
+	 * Makes this matrix a row and a column larger
+	 */
+	public void enlarge(){
+		enlarge(1);
+	}
+
+	/**
+	 * Makes this matrix n row and n column larger
+	 */
+	public void enlarge(int n){
+		ensureCapacity(size + n);
+		size += n;
+	}
+
+	private void check(int i, int j){
+		if(i >= size || j >= size || i < 0 || j < 0){
+			throw new IndexOutOfBoundsException("Address out of bounds in matrix: i: " + i + " j: " + j + " size: " + size);
+		}
+	}
+
+	/**
+	 * Sets the value of a cell
+	 * @param i        row
+	 * @param j        column
+	 * @param element  value
+	 */
+	public void set(int i, int j, boolean element){
+		check(i, j);
+		if(element){
+			rows[i*words + (j >>> 6)] |= 1L << (j & 63);
+			if(columns != null){
+				columns[j*words + (i >>> 6)] |= 1L << (i & 63);
+			}
+		}else{
+			rows[i*words + (j >>> 6)] &= ~(1L << (j & 63));
+			if(columns != null){
+				columns[j*words + (i >>> 6)] &= ~(1L << (i & 63));
+			}
+		}
+	}
+
+	/**
+	 * Gets the value of a cell
+	 * @param i   row
+	 * @param j   column
+	 * @return    value
+	 */
+	public boolean get(int i, int j){
+		check(i, j);
+		return (rows[i*words + (j >>> 6)] & (1L << (j & 63))) != 0;
+	}
+
+	/**
+	 * @param bits  rows of a matrix
+	 * @param row
+	 * @param from  first column to be considered
+	 * @return the first column (from 'from' on) set in row, -1 if there is none
+	 */
+	private int nextSet(long[] bits, int row, int from){
+		if(from >= size) return -1;
+		int w = from >>> 6;
+		int last = (size - 1) >>> 6;
+		long word = bits[row*words + w] & (-1L << (from & 63));
+		while(true){
+			if(word != 0){
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if(++w > last){
+				return -1;
+			}
+			word = bits[row*words + w];
+		}
+	}
+
+	/**
+	 * Visit of a row: for(int j = m.nextSetInRow(i, 0); j != -1; j = m.nextSetInRow(i, j+1))
+	 * @param i     row
+	 * @param from  first column to be considered
+	 * @return the first column j (from 'from' on) such that (i,j) is set, -1 if there is none
+	 */
+	public int nextSetInRow(int i, int from){
+		check(i, 0);
+		return nextSet(rows, i, from);
+	}
+
+	/**
+	 * Visit of a column: for(int i = m.nextSetInColumn(j, 0); i != -1; i = m.nextSetInColumn(j, i+1))
+	 * (O(size) per call if the transposed matrix is not kept)
+	 * @param j     column
+	 * @param from  first row to be considered
+	 * @return the first row i (from 'from' on) such that (i,j) is set, -1 if there is none
+	 */
+	public int nextSetInColumn(int j, int from){
+		check(0, j);
+		if(columns != null){
+			return nextSet(columns, j, from);
+		}
+		for(int i = from; i<size; i++){
+			if((rows[i*words + (j >>> 6)] & (1L << (j & 63))) != 0){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param i
+	 * @return number of set cells in row i
+	 */
+	public int countRow(int i){
+		check(i, 0);
+		int ans = 0;
+		for(int w = i*words, end = w + words; w<end; w++){
+			ans += Long.bitCount(rows[w]);
+		}
+		return ans;
+	}
+
+	/**
+	 * @param j
+	 * @return number of set cells in column j
+	 */
+	public int countColumn(int j){
+		check(0, j);
+		if(columns != null){
+			int ans = 0;
+			for(int w = j*words, end = w + words; w<end; w++){
+				ans += Long.bitCount(columns[w]);
+			}
+			return ans;
+		}
+		int ans = 0;
+		for(int i = 0; i<size; i++){
+			ans += (int) (rows[i*words + (j >>> 6)] >>> (j & 63)) & 1;
+		}
+		return ans;
+	}
+
+	/**
+	 * @return the length of a side of this matrix
+	 */
+	public int getSize(){
+		return size;
+	}
+
+}
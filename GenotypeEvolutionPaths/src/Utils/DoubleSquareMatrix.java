@@ -0,0 +1,289 @@
+package Utils;
+
+import java.util.ArrayList;
+import java.util.stream.IntStream;
+
+/**
+ * Square matrix of doubles stored row by row in a single array
+ * (the rows are 'capacity' cells apart, so the matrix can grow without
+ * moving its cells at each enlarge). New cells are initialized with 0.
+ * @author rossi
+ *
+ */
+public class DoubleSquareMatrix {
+
+	/**
+	 * side of the tiles used by multiply (64x64 doubles = 32KB)
+	 */
+	private static final int BLOCK = 64;
+	/**
+	 * minimum size for a parallel multiply
+	 */
+	private static final int PARALLEL_THRESHOLD = 2*BLOCK;
+
+	private double[] matrix;
+	/**
+	 * distance between two consecutive rows in matrix
+	 */
+	private int capacity;
+	private int size = 0;
+
+	/**
+	 * Default constructor (empty matrix)
+	 */
+	public DoubleSquareMatrix(){
+		this(0);
+	}
+
+	/**
+	 * Creates a matrix of size x size zeros
+	 * @param size length of a side of the matrix
+	 */
+	public DoubleSquareMatrix(int size){
+		this.capacity = size;
+		this.matrix = new double[size*size];
+		this.size = size;
+	}
+
+	/**
+	 * copy constructor
+	 * @param other
+	 */
+	public DoubleSquareMatrix(DoubleSquareMatrix other){
+		this(other.size);
+		for(int i = 0; i<size; i++){
+			System.arraycopy(other.matrix, i*other.capacity, this.matrix, i*size, size);
+		}
+	}
+
+	/**
+	 * Reserves space so that the matrix can reach the given size without
+	 * further reallocations
+	 * @param minCapacity
+	 */
+	public void ensureCapacity(int minCapacity){
+		if(minCapacity <= capacity) return;
+		int newCapacity = Math.max(minCapacity, capacity + (capacity >> 1));
+		double[] newMatrix = new double[newCapacity*newCapacity];
+		for(int i = 0; i<size; i++){
+			System.arraycopy(matrix, i*capacity, newMatrix, i*newCapacity, size);
+		}
+		matrix = newMatrix;
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Makes this matrix a row and a column larger
+	 */
+	public void enlarge(){
+		enlarge(1);
+	}
+
+	/**
+	 * Makes this matrix n row and n column larger
+	 */
+	public void enlarge(int n){
+		ensureCapacity(size + n);
+		size += n;
+	}
+
+	/**
+	 * @param i row
+	 * @param j column
+	 * @return position of the cell in matrix
+	 */
+	private int index(int i, int j){
+		if(i >= size || j >= size || i < 0 || j < 0){
+			throw new IndexOutOfBoundsException("Address out of bounds in matrix: i: " + i + " j: " + j + " size: " + size);
+		}
+		return i*capacity + j;
+	}
+
+	/**
+	 * Sets the value of a cell
+	 * @param i        row
+	 * @param j        column
+	 * @param element  value
+	 */
+	public void set(int i, int j, double element){
+		matrix[index(i, j)] = element;
+	}
+
+	/**
+	 * Adds a value to a cell
+	 * @param i        row
+	 * @param j        column
+	 * @param element  value to be added
+	 */
+	public void add(int i, int j, double element){
+		matrix[index(i, j)] += element;
+	}
+
+	/**
+	 * Gets the value of a cell
+	 * @param i   row
+	 * @param j   column
+	 * @return    value
+	 */
+	public double get(int i, int j){
+		return matrix[index(i, j)];
+	}
+
+	/**
+	 * @param i
+	 * @return a copy of row i
+	 */
+	public double[] getRow(int i){
+		double[] ret = new double[size];
+		System.arraycopy(matrix, index(i, 0), ret, 0, size);
+		return ret;
+	}
+
+	/**
+	 * @param j
+	 * @return a copy of column j
+	 */
+	public double[] getColumn(int j){
+		double[] ret = new double[size];
+		for(int i = 0, pos = index(0, j); i<size; i++, pos += capacity){
+			ret[i] = matrix[pos];
+		}
+		return ret;
+	}
+
+	/**
+	 * @param i
+	 * @return sum of all elements on row i
+	 */
+	public double sumRow(int i){
+		double ans = 0.;
+		for(int pos = index(i, 0), end = pos + size; pos<end; pos++){
+			ans += matrix[pos];
+		}
+		return ans;
+	}
+
+	/**
+	 * @param j
+	 * @return sum of all elements on column j
+	 */
+	public double sumColumn(int j){
+		double ans = 0.;
+		for(int i = 0, pos = index(0, j); i<size; i++, pos += capacity){
+			ans += matrix[pos];
+		}
+		return ans;
+	}
+
+	/**
+	 * @return the length of a side of this matrix
+	 */
+	public int getSize(){
+		return size;
+	}
+
+	/**
+	 * matricial product, computed by square tiles of BLOCK x BLOCK cells:
+	 * blocks of rows are computed in parallel (common ForkJoin pool) and
+	 * tiles that are all zeros are skipped.
+	 * Each cell is accumulated in the same order of the naive product, so the result is the same
+	 * when the matrices are finite (zero cells are skipped: 0*NaN and 0*Infinity do not give NaN)
+	 * @param other REQUIRE same size of this
+	 * @return this*other
+	 */
+	public DoubleSquareMatrix multiply(DoubleSquareMatrix other){
+		assert this.size == other.getSize() : "Matrices must be of the same dimension for multiplication!";
+		DoubleSquareMatrix out = new DoubleSquareMatrix(size);
+		int blocks = (size + BLOCK - 1)/BLOCK;
+		boolean[] nonZeroA = this.nonZeroTiles(blocks);
+		boolean[] nonZeroB = other.nonZeroTiles(blocks);
+		IntStream range = IntStream.range(0, blocks);
+		if(size >= PARALLEL_THRESHOLD){
+			range = range.parallel();
+		}
+		range.forEach(ib -> multiplyRowBlock(other, out, ib, blocks, nonZeroA, nonZeroB));
+		return out;
+	}
+
+	/**
+	 * Computes the rows of block ib of this*other
+	 * @param other     right operand
+	 * @param out       result (rows of block ib are written)
+	 * @param ib        block of rows
+	 * @param blocks    number of blocks per side
+	 * @param nonZeroA  tiles of this with a non zero cell
+	 * @param nonZeroB  tiles of other with a non zero cell
+	 */
+	private void multiplyRowBlock(DoubleSquareMatrix other, DoubleSquareMatrix out, int ib, int blocks, boolean[] nonZeroA, boolean[] nonZeroB){
+		int iEnd = Math.min(size, (ib+1)*BLOCK);
+		for(int kb = 0; kb<blocks; kb++){
+			if(!nonZeroA[ib*blocks + kb]) continue;
+			int kEnd = Math.min(size, (kb+1)*BLOCK);
+			for(int jb = 0; jb<blocks; jb++){
+				if(!nonZeroB[kb*blocks + jb]) continue;
+				int jStart = jb*BLOCK;
+				int jEnd = Math.min(size, jStart + BLOCK);
+				for(int i = ib*BLOCK; i<iEnd; i++){
+					int to = i*out.capacity;
+					for(int k = kb*BLOCK; k<kEnd; k++){
+						double a = this.matrix[i*capacity + k];
+						if(a == 0.) continue;
+						Kernels.axpy(a, other.matrix, k*other.capacity + jStart, out.matrix, to + jStart, jEnd - jStart);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param blocks number of tiles per side
+	 * @return for each tile (row major order) true if it has a non zero cell
+	 */
+	private boolean[] nonZeroTiles(int blocks){
+		boolean[] ret = new boolean[blocks*blocks];
+		for(int i = 0; i<size; i++){
+			for(int j = 0, pos = i*capacity; j<size; j++, pos++){
+				if(matrix[pos] != 0.){
+					ret[(i/BLOCK)*blocks + j/BLOCK] = true;
+					j = (j/BLOCK + 1)*BLOCK - 1; /* rest of the tile */
+					pos = i*capacity + j;
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * premultiply row vector (zero elements of vect are skipped, as in multiply)
+	 * @param vect REQUIRE at least getSize() elements
+	 * @return vect*this
+	 */
+	public double[] vecProduct(double[] vect){
+		double[] out = new double[size];
+		for(int k = 0; k<size; k++){
+			double a = vect[k];
+			if(a == 0.) continue;
+			Kernels.axpy(a, matrix, k*capacity, out, 0, size);
+		}
+		return out;
+	}
+
+	/**
+	 * premultiply row vector
+	 * @param vect REQUIRE at least getSize() elements
+	 * @return vect*this
+	 */
+	public ArrayList<Double> vecProduct(ArrayList<Double> vect){
+		double[] in = new double[size];
+		for(int k = 0; k<size; k++){
+			in[k] = vect.get(k);
+		}
+		double[] res = vecProduct(in);
+		ArrayList<Double> out = new ArrayList<Double>(size);
+		for(double cell : res){
+			out.add(cell);
+		}
+		return out;
+	}
+
+}
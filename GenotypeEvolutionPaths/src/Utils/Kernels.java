@@ -0,0 +1,68 @@
+package Utils;
+
+/**
+ * Inner loops shared by matrices and genotypes, written so that the JIT
+ * compiler can map them on SIMD instructions (SSE/AVX): element wise loops
+ * are kept simple (they are vectorized as they are) and genotypes are
+ * processed 64 genes per operation (packed as in Utils.pack, counted with popcnt).
+ * @author rossi
+ *
+ */
+public class Kernels {
+
+	/**
+	 * y[yFrom..yFrom+length) += alpha * x[xFrom..xFrom+length)
+	 * (each cell is computed as in the simple loop, so the result is the same)
+	 * @param alpha
+	 * @param x
+	 * @param xFrom
+	 * @param y
+	 * @param yFrom
+	 * @param length
+	 */
+	public static void axpy(double alpha, double[] x, int xFrom, double[] y, int yFrom, int length){
+		/* kept as a simple loop: the JIT vectorizes it, manual unrolling prevents that */
+		for(int i = 0; i<length; i++){
+			y[yFrom+i] += alpha*x[xFrom+i];
+		}
+	}
+
+	/**
+	 * @param packed genotype
+	 * @return number of mutated genes
+	 */
+	public static int popCount(long[] packed){
+		int count = 0;
+		for(long word : packed){
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * @param a packed genotype
+	 * @param b packed genotype (same length of a)
+	 * @return the hamming distance between a and b
+	 */
+	public static int hammingDistance(long[] a, long[] b){
+		int count = 0;
+		for(int w = 0; w<a.length; w++){
+			count += Long.bitCount(a[w] ^ b[w]);
+		}
+		return count;
+	}
+
+	/**
+	 * @param a packed genotype
+	 * @param b packed genotype (same length of a)
+	 * @return true if every gene mutated in a is mutated in b
+	 */
+	public static boolean isSubseteq(long[] a, long[] b){
+		/* stops at the first word with a gene not mutated in b */
+		for(int w = 0; w<a.length; w++){
+			if((a[w] & ~b[w]) != 0) return false;
+		}
+		return true;
+	}
+
+}
@@ -92,22 +92,31 @@ public class SquareMatrix <T>{
 	}
 	
 	/**
-	 * matricial product
-	 * @param other
-	 * @return
+	 * matricial product (computed with DoubleSquareMatrix.multiply)
+	 * @param other REQUIRE this and other are matrices of Double
+	 * @return this*other
 	 */
 	public SquareMatrix<Double> multiply(SquareMatrix<T> other){
 		assert this.size == other.getSize() : "Matrices must be of the same dimension for multiplication!";
+		DoubleSquareMatrix product = this.toDoubleSquareMatrix().multiply(other.toDoubleSquareMatrix());
 		SquareMatrix<Double> out = new SquareMatrix<Double>(0.);
 		out.enlarge(this.size);
-		/* check bounds */
 		for(int i = 0; i< this.size; i++){
 			for(int j=0; j<this.size; j++){
-				Double cell = 0.;
-				for(int k = 0; k<this.size; k++){
-					cell += (Double) this.get(i,k) * (Double) other.get(k, j);
-				}
-				out.set(i, j, cell);
+				out.set(i, j, product.get(i, j));
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * @return a primitive copy of this matrix (REQUIRE this is a matrix of Double)
+	 */
+	public DoubleSquareMatrix toDoubleSquareMatrix(){
+		DoubleSquareMatrix out = new DoubleSquareMatrix(this.size);
+		for(int i = 0; i< this.size; i++){
+			for(int j=0; j<this.size; j++){
+				out.set(i, j, (Double) this.get(i, j));
 			}
 		}
 		return out;
@@ -1,6 +1,7 @@
 package Utils;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 public class Utils {
@@ -35,7 +36,7 @@ public class Utils {
 	 * @param   arr 
 	 * @return  sum of all arr's elements 
 	 */
-	public static long sumInt(ArrayList<Integer> arr) {
+	public static long sumInt(List<Integer> arr) {
 		int sum = 0;
 		for(int v: arr){
 			sum+=v;
@@ -237,4 +238,99 @@ public class Utils {
 		return true;
 	}
 	
+	/**
+	 * @param numberOfGenes
+	 * @return the number of long words needed to pack a genotype of numberOfGenes genes
+	 */
+	public static int wordsFor(int numberOfGenes){
+		return (numberOfGenes + 63) >>> 6;
+	}
+	
+	/**
+	 * Packs a boolean vector in long words 
+	 * (position j is the (63 - j%64)-th bit of the (j/64)-th word)
+	 * @param bs
+	 * @return the packed representation of bs
+	 */
+	public static long[] pack(boolean[] bs){
+		long[] ret = new long[wordsFor(bs.length)];
+		for(int j = 0; j<bs.length; j++){
+			if(bs[j]){
+				ret[j >>> 6] |= Long.MIN_VALUE >>> (j & 63);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Inverse of pack
+	 * @param packed
+	 * @param size number of elements of the unpacked vector
+	 * @return the boolean vector represented by packed
+	 */
+	public static boolean[] unpack(long[] packed, int size){
+		boolean[] ret = new boolean[size];
+		for(int w = 0; w<packed.length; w++){
+			long word = packed[w];
+			while(word != 0){
+				int bit = Long.numberOfLeadingZeros(word);
+				ret[(w << 6) + bit] = true;
+				word &= ~(Long.MIN_VALUE >>> bit);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @param packed genotype
+	 * @param j      position
+	 * @return true if the j-th element of packed is set
+	 */
+	public static boolean getBit(long[] packed, int j){
+		return (packed[j >>> 6] & (Long.MIN_VALUE >>> (j & 63))) != 0;
+	}
+	
+	/**
+	 * @param packed genotype
+	 * @return number of set elements of packed (popcount)
+	 */
+	public static int sumBits(long[] packed){
+		return Kernels.popCount(packed);
+	}
+	
+	/**
+	 * @param a packed genotype
+	 * @param b packed genotype
+	 * @return the hammingDistance between the genotypes a and b
+	 */
+	public static int hammingDistance(long[] a, long[] b){
+		return Kernels.hammingDistance(a, b);
+	}
+	
+	/**
+	 * Comparator for packed a and b seen as binary values
+	 * @param a
+	 * @param b
+	 * @return a>b = 1, a=b = 0, a<b = -1
+	 */
+	public static int genotypeBinaryValueCompare(long[] a, long[] b){
+		for(int w = 0; w<a.length; w++){
+			int cmp = Long.compareUnsigned(a[w], b[w]);
+			if(cmp != 0){
+				return cmp > 0 ? 1 : -1;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * @param a packed set 
+	 * @param b packed set
+	 * @return a \subseteq b
+	 */
+	public static boolean isSubseteq(long[] a, long[] b){
+		assert(a.length == b.length);
+		return Kernels.isSubseteq(a, b);
+	}
+	
 }